@@ -0,0 +1,117 @@
+package diergo.spring.legacy;
+
+import diergo.spring.legacy.LegacyScanReport.Phase;
+import java.util.function.Consumer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for a post processor run.
+ * The scan event is started on creation and ended by the report at the end of the run, so its duration is the one
+ * of the whole run and thresholds apply to it. The filter events carry the statistics of the run.
+ * This class is compiled separately and is only available if the build JDK supports JFR, so it is instantiated by
+ * reflection if {@code jdk.jfr.Event} is present.
+ *
+ * @see LegacyScanReport
+ */
+final class LegacyScanEvents implements Consumer<LegacyScanReport> {
+
+    private final ScanEvent scan = new ScanEvent();
+
+    LegacyScanEvents() {
+        scan.begin();
+    }
+
+    /**
+     * End the scan event and commit it and an event for each filter if enabled.
+     */
+    @Override
+    public void accept(LegacyScanReport report) {
+        scan.end();
+        String basePackages = String.join(",", report.getBasePackages());
+        if (scan.shouldCommit()) {
+            scan.basePackages = basePackages;
+            scan.indexed = report.isIndexed();
+            scan.index = report.getDuration(Phase.INDEX).toNanos();
+            scan.resources = report.getDuration(Phase.RESOURCES).toNanos();
+            scan.matching = report.getDuration(Phase.MATCHING).toNanos();
+            scan.customization = report.getDuration(Phase.CUSTOMIZATION).toNanos();
+            scan.factories = report.getDuration(Phase.FACTORIES).toNanos();
+            scan.registration = report.getDuration(Phase.REGISTRATION).toNanos();
+            scan.registered = report.getRegistered();
+            scan.commit();
+        }
+        report.getFilters().forEach(filter -> {
+            FilterEvent event = new FilterEvent();
+            if (event.shouldCommit()) {
+                event.basePackages = basePackages;
+                event.filter = filter.getName();
+                event.inspected = filter.getInspected();
+                event.matched = filter.getMatched();
+                event.rejected = filter.getRejected();
+                event.matching = filter.getDuration().toNanos();
+                event.commit();
+            }
+        });
+    }
+
+    @Name("diergo.spring.legacy.Scan")
+    @Label("Legacy Bean Scan")
+    @Description("Timings of a legacy bean post processor run")
+    @Category({"Spring", "Legacy Beans"})
+    @StackTrace(false)
+    static final class ScanEvent extends Event {
+
+        @Label("Base Packages")
+        String basePackages;
+        @Label("Indexed")
+        boolean indexed;
+        @Label("Index")
+        @Timespan
+        long index;
+        @Label("Resource Enumeration")
+        @Timespan
+        long resources;
+        @Label("Matching")
+        @Timespan
+        long matching;
+        @Label("Customization")
+        @Timespan
+        long customization;
+        @Label("Factory Resolution")
+        @Timespan
+        long factories;
+        @Label("Registration")
+        @Timespan
+        long registration;
+        @Label("Registered Beans")
+        int registered;
+    }
+
+    @Name("diergo.spring.legacy.ScanFilter")
+    @Label("Legacy Bean Scan Filter")
+    @Description("Statistics of a filter used by a legacy bean post processor run")
+    @Category({"Spring", "Legacy Beans"})
+    @StackTrace(false)
+    static final class FilterEvent extends Event {
+
+        @Label("Base Packages")
+        String basePackages;
+        @Label("Filter")
+        String filter;
+        @Label("Inspected Classes")
+        long inspected;
+        @Label("Matched Classes")
+        long matched;
+        @Label("Rejected Classes")
+        long rejected;
+        @Label("Matching")
+        @Timespan
+        long matching;
+    }
+}
@@ -0,0 +1,76 @@
+package diergo.spring.legacy;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class LegacyScanEventsTest {
+
+    private static final String SCAN = "diergo.spring.legacy.Scan";
+    private static final String FILTER = "diergo.spring.legacy.ScanFilter";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void scanIsRecordedAsFlightRecorderEvents() throws IOException {
+        List<RecordedEvent> actual = record(Duration.ZERO);
+
+        assertThat(actual.stream().map(RecordedEvent::getEventType).map(EventType::getName).collect(toList()),
+                hasItem(FILTER));
+        List<RecordedEvent> scans = getEvents(actual, SCAN);
+        assertThat(scans, hasSize(1));
+        assertThat(scans.get(0).getDuration(), is(greaterThan(Duration.ZERO)));
+    }
+
+    @Test
+    public void scanShorterThanThresholdIsNotRecorded() throws IOException {
+        List<RecordedEvent> actual = record(Duration.ofHours(1));
+
+        assertThat(getEvents(actual, SCAN), is(empty()));
+    }
+
+    private List<RecordedEvent> record(Duration threshold) throws IOException {
+        Path file = tempDir.resolve("scan.jfr");
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"))
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+        try (Recording recording = new Recording()) {
+            recording.enable(SCAN).withThreshold(threshold);
+            recording.enable(FILTER);
+            recording.start();
+            processor.postProcessBeanDefinitionRegistry(new SimpleBeanDefinitionRegistry());
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> getEvents(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(toList());
+    }
+}
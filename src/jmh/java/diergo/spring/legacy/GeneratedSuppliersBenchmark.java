@@ -0,0 +1,70 @@
+package diergo.spring.legacy;
+
+import example.legacy.CreatedPrototype;
+import example.legacy.LegacyFactoryBean;
+import example.legacy.LegacyPrototypeByStaticMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+
+/**
+ * Creates legacy prototypes by the bean factory using the factory methods or generated suppliers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratedSuppliersBenchmark {
+
+    @Param({"false", "true"})
+    public boolean generated;
+
+    private DefaultListableBeanFactory beanFactory;
+    private String staticMethodBean;
+    private String factoryMethodBean;
+
+    @Setup
+    public void createBeanFactory() {
+        beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("factory", new RootBeanDefinition(LegacyFactoryBean.class));
+        LegacyBeanRegistryPostProcessorBuilder builder = legacyPackages("example.legacy")
+                .prototypesFrom().methods(named("createInstance"))
+                .factory(LegacyFactoryBean.class).prototypes(named("createPrototype"));
+        if (generated) {
+            builder.generatedSuppliers();
+        }
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+        staticMethodBean = beanFactory.getBeanNamesForType(LegacyPrototypeByStaticMethod.class)[0];
+        factoryMethodBean = beanFactory.getBeanNamesForType(CreatedPrototype.class)[0];
+    }
+
+    @Benchmark
+    public Object staticMethodPrototype() {
+        return beanFactory.getBean(staticMethodBean);
+    }
+
+    @Benchmark
+    public Object factoryMethodPrototype() {
+        return beanFactory.getBean(factoryMethodBean);
+    }
+}
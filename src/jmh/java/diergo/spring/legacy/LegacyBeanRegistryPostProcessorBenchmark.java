@@ -0,0 +1,63 @@
+package diergo.spring.legacy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+
+/**
+ * Scans packages of different size using the default rules.
+ * The packages must not contain classes depending on optional libraries missing on the class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LegacyBeanRegistryPostProcessorBenchmark {
+
+    @Param({"example", "org.hamcrest"})
+    public String basePackage;
+
+    @Param({"false", "true"})
+    public boolean classFileMatching;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private LegacyBeanRegistryPostProcessor processor;
+
+    @Setup
+    public void createPostProcessor() {
+        LegacyBeanRegistryPostProcessorBuilder builder = legacyPackages(basePackage);
+        if (classFileMatching) {
+            builder.classFileMatching();
+        }
+        if (parallel) {
+            builder.parallelScan();
+        }
+        processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+    }
+
+    @Benchmark
+    public SimpleBeanDefinitionRegistry postProcess() {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        processor.postProcess(registry);
+        return registry;
+    }
+}
@@ -0,0 +1,72 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacySingletonByField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Gets a legacy singleton using the instance supplier of a static field
+ * compared to the reflective field access used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LegacySingletonFieldFilterBenchmark {
+
+    private Supplier<?> supplier;
+    private Supplier<?> indexedSupplier;
+    private Field field;
+    private String className;
+
+    @Setup
+    public void createSupplier() {
+        RootBeanDefinition bd = new RootBeanDefinition(LegacySingletonByField.class);
+        new LegacySingletonFieldFilter(field -> true).customize(bd);
+        supplier = bd.getInstanceSupplier();
+        RootBeanDefinition indexed = new RootBeanDefinition(LegacySingletonByField.class.getName());
+        LegacySingletonFieldFilter.customizeBeanDefinition("INSTANCE", indexed);
+        indexedSupplier = indexed.getInstanceSupplier();
+        field = ReflectionUtils.findField(LegacySingletonByField.class, "INSTANCE");
+        className = LegacySingletonByField.class.getName();
+    }
+
+    @Benchmark
+    public Object instanceSupplier() {
+        return supplier.get();
+    }
+
+    @Benchmark
+    public Object indexedInstanceSupplier() {
+        return indexedSupplier.get();
+    }
+
+    @Benchmark
+    public Object reflectiveAccess() throws IllegalAccessException {
+        field.setAccessible(true);
+        return field.get(LegacySingletonByField.class);
+    }
+
+    @Benchmark
+    public Object reflectiveLookupAndAccess() throws ReflectiveOperationException {
+        Field access = ReflectionUtils.findField(Class.forName(className), "INSTANCE");
+        access.setAccessible(true);
+        return access.get(null);
+    }
+}
@@ -0,0 +1,86 @@
+package diergo.spring.legacy;
+
+import example.spring.IndependentSpringBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets a bean from legacy code with and without a started context
+ * and calls a proxy got before the context has been started.
+ * With more than one context the bean is routed by the thread context class loader.
+ * With metrics all accesses are counted and timed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LegacySpringAccessBenchmark {
+
+    @Param({"false", "true"})
+    public boolean started;
+
+    @Param({"1", "2"})
+    public int contexts;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private StaticApplicationContext context;
+    private StaticApplicationContext other;
+    private IndependentSpringBean earlyProxy;
+
+    @Setup
+    public void startContext() {
+        if (metrics) {
+            LegacySpringAccess.setListener(new LegacySpringAccessMetrics());
+        }
+        earlyProxy = LegacySpringAccess.getSpringBean(IndependentSpringBean.class);
+        context = new StaticApplicationContext();
+        context.registerSingleton("springBean", IndependentSpringBean.class);
+        context.refresh();
+        other = new StaticApplicationContext();
+        other.getBeanFactory().setBeanClassLoader(new URLClassLoader(new URL[0], getClass().getClassLoader()));
+        other.registerSingleton("springBean", IndependentSpringBean.class);
+        if (started) {
+            if (contexts > 1) {
+                new LegacySpringAccess().setBeanFactory(other.getBeanFactory());
+            }
+            new LegacySpringAccess().setBeanFactory(context.getBeanFactory());
+        }
+    }
+
+    @TearDown
+    public void stopContext() {
+        LegacySpringAccess.reset();
+        context.close();
+    }
+
+    @Benchmark
+    public IndependentSpringBean getSpringBean() {
+        return LegacySpringAccess.getSpringBean(IndependentSpringBean.class);
+    }
+
+    @Benchmark
+    public void callEarlyProxy() {
+        if (started) {
+            earlyProxy.doIt();
+        }
+    }
+}
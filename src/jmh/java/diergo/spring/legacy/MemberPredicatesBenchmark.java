@@ -0,0 +1,87 @@
+package diergo.spring.legacy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static diergo.spring.legacy.MemberPredicates.anyConstant;
+import static diergo.spring.legacy.MemberPredicates.anyGetter;
+import static diergo.spring.legacy.MemberPredicates.atClass;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static diergo.spring.legacy.MemberPredicates.returningBeanType;
+import static diergo.spring.legacy.MemberPredicates.withoutParameters;
+
+/**
+ * Tests the members of a large class by typical predicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MemberPredicatesBenchmark {
+
+    private Method[] methods;
+    private Field[] fields;
+    private Predicate<Method> named;
+    private Predicate<Method> composed;
+    private Predicate<Method> getter;
+    private Predicate<Field> constant;
+
+    @Setup
+    public void createPredicates() {
+        methods = DefaultListableBeanFactory.class.getDeclaredMethods();
+        fields = DefaultListableBeanFactory.class.getDeclaredFields();
+        named = named("getInstance", "createInstance", "getBean", "instance");
+        composed = MemberPredicates.<Method>visible()
+                .and(atClass())
+                .and(withoutParameters())
+                .and(returningBeanType())
+                .and(named("getInstance"));
+        getter = anyGetter();
+        constant = anyConstant();
+    }
+
+    @Benchmark
+    public void byName(Blackhole blackhole) {
+        for (Method method : methods) {
+            blackhole.consume(named.test(method));
+        }
+    }
+
+    @Benchmark
+    public void byComposition(Blackhole blackhole) {
+        for (Method method : methods) {
+            blackhole.consume(composed.test(method));
+        }
+    }
+
+    @Benchmark
+    public void byGetterName(Blackhole blackhole) {
+        for (Method method : methods) {
+            blackhole.consume(getter.test(method));
+        }
+    }
+
+    @Benchmark
+    public void byConstantName(Blackhole blackhole) {
+        for (Field field : fields) {
+            blackhole.consume(constant.test(field));
+        }
+    }
+}
@@ -48,6 +48,14 @@ abstract class AbstractRegistryPostProcessor implements BeanDefinitionRegistryPo
         }
     }
 
+    /**
+     * Check whether the registry has been post processed already.
+     */
+    boolean isPostProcessed(Object registry) {
+        int registryId = System.identityHashCode(registry);
+        return registriesPostProcessed.contains(registryId) || factoriesPostProcessed.contains(registryId);
+    }
+
     @Override
     public int getOrder() {
         return order;
@@ -0,0 +1,64 @@
+package diergo.spring.legacy;
+
+import static org.springframework.util.ReflectionUtils.getAllDeclaredMethods;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+
+/**
+ * Looks up bean definitions of a registry by their class name using an index built on first use.
+ * Additionally caches the methods of the types inspected, so all factory scanners of a post processor run can
+ * share both.
+ * The index does not reflect bean definitions registered after it has been built unless they are added to the lookup.
+ *
+ * @see LegacyFactoryBeanScanner
+ */
+final class BeanDefinitionLookup {
+
+    private final BeanDefinitionRegistry registry;
+    private final Map<Class<?>, Method[]> methods = new HashMap<>();
+    private Map<String, String> beanNames;
+
+    BeanDefinitionLookup(BeanDefinitionRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Find the name of a bean definition with the class name passed.
+     * If there are more than one, the first one listed by the registry is found.
+     */
+    Optional<String> findBeanName(String className) {
+        if (beanNames == null) {
+            beanNames = new HashMap<>();
+            for (String name : registry.getBeanDefinitionNames()) {
+                String beanClassName = registry.getBeanDefinition(name).getBeanClassName();
+                if (beanClassName != null) {
+                    beanNames.putIfAbsent(beanClassName, name);
+                }
+            }
+        }
+        return Optional.ofNullable(beanNames.get(className));
+    }
+
+    /**
+     * Add a bean definition registered after the index has been built.
+     */
+    void add(String beanName, BeanDefinition bd) {
+        if (beanNames != null && bd.getBeanClassName() != null) {
+            beanNames.putIfAbsent(bd.getBeanClassName(), beanName);
+        }
+    }
+
+    /**
+     * Get all methods declared by the type and its super classes.
+     *
+     * @see org.springframework.util.ReflectionUtils#getAllDeclaredMethods(Class)
+     */
+    Method[] getAllMethods(Class<?> type) {
+        return methods.computeIfAbsent(type, declaring -> getAllDeclaredMethods(declaring));
+    }
+}
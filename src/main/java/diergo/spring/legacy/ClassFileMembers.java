@@ -0,0 +1,169 @@
+package diergo.spring.legacy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.core.io.Resource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+/**
+ * The fields and methods declared by a class as found in the class file.
+ * Reading the class file does not load the class.
+ */
+final class ClassFileMembers {
+
+    private final String className;
+    private final List<Member> fields;
+    private final List<Member> methods;
+
+    private ClassFileMembers(String className, List<Member> fields, List<Member> methods) {
+        this.className = className;
+        this.fields = Collections.unmodifiableList(fields);
+        this.methods = Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * Read the members from the class file of the metadata reader.
+     */
+    static ClassFileMembers read(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+            throws IOException {
+        Resource resource = metadataReader.getResource();
+        if (resource == null) {
+            resource = metadataReaderFactory
+                    .getMetadataReader(metadataReader.getClassMetadata().getClassName())
+                    .getResource();
+        }
+        try (InputStream in = resource.getInputStream()) {
+            MembersVisitor visitor = new MembersVisitor();
+            new ClassReader(in).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return new ClassFileMembers(visitor.className, visitor.fields, visitor.methods);
+        }
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    List<Member> getFields() {
+        return fields;
+    }
+
+    List<Member> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Check whether a value of the named type can be assigned to the class without loading any of both.
+     * If the hierarchy of the type cannot be read, the type is assumed to be assignable.
+     */
+    boolean isAssignableFrom(String typeName, MetadataReaderFactory metadataReaderFactory) {
+        String current = typeName;
+        while (current != null && !current.startsWith("java.")) {
+            if (current.equals(className)) {
+                return true;
+            }
+            try {
+                current = metadataReaderFactory.getMetadataReader(current).getClassMetadata().getSuperClassName();
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A field or method found in the class file.
+     */
+    static final class Member {
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+
+        Member(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * The access flags, using the same bits as {@link java.lang.reflect.Modifier}.
+         */
+        int getAccess() {
+            return access;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getDescriptor() {
+            return descriptor;
+        }
+
+        boolean isPrivate() {
+            return (access & Opcodes.ACC_PRIVATE) != 0;
+        }
+
+        /**
+         * The number of parameters of a method, always {@code 0} for fields.
+         */
+        int getParameterCount() {
+            return isMethod() ? Type.getArgumentTypes(descriptor).length : 0;
+        }
+
+        /**
+         * The class name of the field type or method return type.
+         *
+         * @return the name or {@code null} for primitives, arrays and {@code void}
+         */
+        String getTypeName() {
+            Type type = isMethod() ? Type.getReturnType(descriptor) : Type.getType(descriptor);
+            return type.getSort() == Type.OBJECT ? type.getClassName() : null;
+        }
+
+        private boolean isMethod() {
+            return descriptor.charAt(0) == '(';
+        }
+    }
+
+    private static class MembersVisitor extends ClassVisitor {
+
+        private final List<Member> fields = new ArrayList<>();
+        private final List<Member> methods = new ArrayList<>();
+        private String className;
+
+        MembersVisitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = Type.getObjectType(name).getClassName();
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            fields.add(new Member(access, name, descriptor));
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (name.charAt(0) != '<') {
+                methods.add(new Member(access, name, descriptor));
+            }
+            return null;
+        }
+    }
+}
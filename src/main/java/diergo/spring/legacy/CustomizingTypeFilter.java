@@ -1,12 +1,17 @@
 package diergo.spring.legacy;
 
+import java.io.IOException;
 import java.lang.reflect.Member;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
 
 /**
  * Support class to combine type filtering, bean definition filtering and customizing as needed by the post processor.
@@ -19,6 +24,9 @@ import org.springframework.core.type.filter.TypeFilter;
 abstract class CustomizingTypeFilter<T extends Member> implements TypeFilter, SmartBeanDefinitionCustomizer {
 
     protected final Predicate<? super T> accessCheck;
+    private volatile ClassLoader classLoader = CustomizingTypeFilter.class.getClassLoader();
+    private volatile Map<String, Optional<Class<?>>> typeCache;
+    private volatile Map<String, Optional<T>> accessCache;
 
     CustomizingTypeFilter(Predicate<? super T> accessCheck) {
         this.accessCheck = MemberPredicates.<T>visible()
@@ -32,6 +40,33 @@ abstract class CustomizingTypeFilter<T extends Member> implements TypeFilter, Sm
                 .isPresent();
     }
 
+    /**
+     * Check the class file for visible static members which may provide the bean without loading the class.
+     * The class has to be loaded by {@link #match(MetadataReader, MetadataReaderFactory)} only if this returns
+     * {@code true}, because opaque parts of the access check can only be done on loaded members.
+     *
+     * @see MemberPredicate#mayMatch(ClassFileMembers.Member)
+     */
+    boolean matchClassFile(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+            throws IOException {
+        ClassFileMembers members = ClassFileMembers.read(metadataReader, metadataReaderFactory);
+        MemberPredicate<? super T> check = MemberPredicate.of(accessCheck);
+        return getCandidates(members)
+                .filter(member -> member.getTypeName() != null && check.mayMatch(member))
+                .anyMatch(member -> members.isAssignableFrom(member.getTypeName(), metadataReaderFactory));
+    }
+
+    /**
+     * Describe the rules of this filter to detect changes between the creation of an index and its use.
+     *
+     * @return the description or {@code null} if the access check contains opaque predicates
+     * @see MemberPredicate#getDescription()
+     */
+    String getRules() {
+        String description = MemberPredicate.of(accessCheck).getDescription();
+        return description == null ? null : this + ": " + description;
+    }
+
     @Override
     public boolean supports(BeanDefinition bd) {
         return getAccess(bd.getBeanClassName())
@@ -41,20 +76,92 @@ abstract class CustomizingTypeFilter<T extends Member> implements TypeFilter, Sm
     @Override
     public void customize(BeanDefinition bd) {
         getAccess(bd.getBeanClassName())
-                .ifPresent(access -> customizeBeanDefinition(access, bd));
+                .ifPresent(access -> {
+                    customizeBeanDefinition(access, bd);
+                    TargetTypes.customize(bd, access);
+                });
+    }
+
+    /**
+     * Describe the bean created for the class as an index entry.
+     *
+     * @see LegacyBeanIndex
+     */
+    Optional<LegacyBeanIndex.Entry> describe(String className) {
+        return getAccess(className)
+                .map(access -> describe(className, access));
+    }
+
+    /**
+     * Load the classes to check by the class loader passed instead of the one of this library.
+     */
+    void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Get the class loader the classes to check are loaded by.
+     */
+    ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Start caching the access members resolved by class name until the scan is finished.
+     * The types loaded are cached in the map passed, so it can be shared between all filters of a scan.
+     * Classes which cannot be loaded are cached as missing, too.
+     *
+     * @see #finishScan()
+     */
+    void startScan(Map<String, Optional<Class<?>>> typeCache) {
+        this.typeCache = typeCache;
+        this.accessCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Drop all cached types and access members.
+     *
+     * @see #startScan(Map)
+     */
+    void finishScan() {
+        this.typeCache = null;
+        this.accessCache = null;
     }
 
     private Optional<T> getAccess(String className) {
-        return getType(className).flatMap(this::getAccess);
+        Map<String, Optional<T>> cache = accessCache;
+        if (cache == null || className == null) {
+            return getType(className, classLoader).flatMap(this::getAccess);
+        }
+        return cache.computeIfAbsent(className, name -> getCachedType(name).flatMap(this::getAccess));
+    }
+
+    private Optional<Class<?>> getCachedType(String className) {
+        Map<String, Optional<Class<?>>> cache = typeCache;
+        return cache == null ? getType(className, classLoader)
+                : cache.computeIfAbsent(className, name -> getType(name, classLoader));
     }
 
     protected abstract Optional<T> getAccess(Class<?> type);
 
+    protected abstract Stream<ClassFileMembers.Member> getCandidates(ClassFileMembers members);
+
     protected abstract void customizeBeanDefinition(T access, BeanDefinition bd);
 
-    static Optional<Class<?>> getType(String className) {
+    protected abstract LegacyBeanIndex.Entry describe(String className, T access);
+
+    /**
+     * Load the class without initializing it.
+     *
+     * @param classLoader the class loader or {@code null} to use the default one
+     * @see ClassUtils#getDefaultClassLoader()
+     */
+    static Optional<Class<?>> getType(String className, ClassLoader classLoader) {
+        if (className == null) {
+            return Optional.empty();
+        }
         try {
-            return Optional.of(Class.forName(className, false, CustomizingTypeFilter.class.getClassLoader()));
+            return Optional.of(ClassUtils.forName(className, classLoader));
         } catch (ClassNotFoundException | LinkageError e) {
             return Optional.empty();
         }
@@ -0,0 +1,209 @@
+package diergo.spring.legacy;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Creates instance suppliers calling the factory method of a bean definition directly instead of letting
+ * the bean factory resolve and invoke it reflectively on each bean creation.
+ * The supplier is generated by the {@link LambdaMetafactory} on first use if the method is public and visible,
+ * otherwise a {@link MethodHandle} is used.
+ * Bean classes known by name only are loaded by the bean class loader. The generated supplier is defined by the class
+ * loader of this library, so classes not visible to it are called by method handles.
+ * The factory method name stays set, so the bean type can still be predicted without creating the bean.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#generatedSuppliers()
+ */
+final class GeneratedSuppliers {
+
+    private static final Log LOGGER = LogFactory.getLog(GeneratedSuppliers.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SUPPLIER_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private GeneratedSuppliers() {
+    }
+
+    /**
+     * Set an instance supplier calling the factory method without parameters of the bean definition.
+     * Factory methods of a factory bean are supported only if the registry is a bean factory, too.
+     * Bean definitions without factory method or with an instance supplier already are left untouched.
+     */
+    static void customize(BeanDefinition bd, BeanDefinitionRegistry registry) {
+        if (!(bd instanceof AbstractBeanDefinition) || bd.getFactoryMethodName() == null) {
+            return;
+        }
+        AbstractBeanDefinition adb = (AbstractBeanDefinition) bd;
+        if (adb.getInstanceSupplier() != null) {
+            return;
+        }
+        String factoryBeanName = adb.getFactoryBeanName();
+        if (factoryBeanName == null) {
+            ClassLoader classLoader = registry instanceof ConfigurableBeanFactory
+                    ? ((ConfigurableBeanFactory) registry).getBeanClassLoader() : null;
+            adb.setInstanceSupplier(new LazySupplier(() -> forStaticMethod(
+                    findFactoryMethod(getBeanClass(adb, classLoader), adb))));
+        } else if (registry instanceof BeanFactory) {
+            BeanFactory beanFactory = (BeanFactory) registry;
+            adb.setInstanceSupplier(new LazySupplier(() -> forInstanceMethod(
+                    findFactoryMethod(beanFactory.getType(factoryBeanName), adb),
+                    () -> beanFactory.getBean(factoryBeanName))));
+        }
+    }
+
+    /**
+     * Create a supplier calling the static method without parameters.
+     */
+    static Supplier<Object> forStaticMethod(Method method) {
+        if (isGeneratable(method)) {
+            @SuppressWarnings("unchecked")
+            Supplier<Object> supplier = (Supplier<Object>) generate(method, "get", Supplier.class, SUPPLIER_TYPE,
+                    MethodType.methodType(method.getReturnType()));
+            if (supplier != null) {
+                return supplier;
+            }
+        }
+        MethodHandle handle = unreflect(method).asType(SUPPLIER_TYPE);
+        return () -> {
+            try {
+                return (Object) handle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new BeanCreationException("Cannot create bean using factory method " + method, e);
+            }
+        };
+    }
+
+    /**
+     * Create a supplier calling the instance method without parameters on the target supplied.
+     */
+    static Supplier<Object> forInstanceMethod(Method method, Supplier<?> target) {
+        Function<Object, Object> function = null;
+        if (isGeneratable(method)) {
+            @SuppressWarnings("unchecked")
+            Function<Object, Object> generated = (Function<Object, Object>) generate(method, "apply", Function.class,
+                    FUNCTION_TYPE, MethodType.methodType(method.getReturnType(), method.getDeclaringClass()));
+            function = generated;
+        }
+        if (function == null) {
+            MethodHandle handle = unreflect(method).asType(FUNCTION_TYPE);
+            function = instance -> {
+                try {
+                    return (Object) handle.invokeExact(instance);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new BeanCreationException("Cannot create bean using factory method " + method, e);
+                }
+            };
+        }
+        Function<Object, Object> resolved = function;
+        return () -> resolved.apply(target.get());
+    }
+
+    /**
+     * Generate a lambda implementing the functional interface by calling the method.
+     *
+     * @return the lambda or {@code null} if it cannot be generated, so a method handle has to be used
+     */
+    private static Object generate(Method method, String name, Class<?> functionalInterface, MethodType erasedType,
+                                   MethodType instantiatedType) {
+        CallSite site;
+        try {
+            site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(functionalInterface), erasedType,
+                    LOOKUP.unreflect(method), instantiatedType);
+        } catch (LambdaConversionException | IllegalAccessException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Using method handle to call factory method " + method, e);
+            }
+            return null;
+        }
+        try {
+            return site.getTarget().invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot generate supplier calling factory method " + method, e);
+        }
+    }
+
+    /**
+     * Lambdas can only be generated for public methods of public classes visible to this class,
+     * as the generated class is defined in its class loader.
+     */
+    private static boolean isGeneratable(Method method) {
+        Class<?> type = method.getDeclaringClass();
+        return Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(type.getModifiers())
+                && ClassUtils.isVisible(type, GeneratedSuppliers.class.getClassLoader())
+                && ClassUtils.isVisible(method.getReturnType(), GeneratedSuppliers.class.getClassLoader());
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        ReflectionUtils.makeAccessible(method);
+        try {
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new BeanCreationException("Cannot access factory method " + method, e);
+        }
+    }
+
+    private static Method findFactoryMethod(Class<?> type, AbstractBeanDefinition adb) {
+        Method method = type == null ? null : ReflectionUtils.findMethod(ClassUtils.getUserClass(type),
+                adb.getFactoryMethodName());
+        if (method == null) {
+            throw new BeanCreationException("Cannot find factory method " + adb.getFactoryMethodName()
+                    + " of " + (type == null ? adb.getFactoryBeanName() : type.getName()));
+        }
+        return method;
+    }
+
+    private static Class<?> getBeanClass(AbstractBeanDefinition adb, ClassLoader classLoader) {
+        try {
+            return adb.hasBeanClass() ? adb.getBeanClass() : ClassUtils.forName(adb.getBeanClassName(), classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new BeanCreationException("Cannot create bean of missing class " + adb.getBeanClassName(), e);
+        }
+    }
+
+    /**
+     * Resolves the delegate on first use only, so suppliers are generated for beans created only.
+     */
+    private static final class LazySupplier implements Supplier<Object> {
+
+        private final Supplier<Supplier<Object>> resolver;
+        private volatile Supplier<Object> delegate;
+
+        private LazySupplier(Supplier<Supplier<Object>> resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Object get() {
+            Supplier<Object> resolved = delegate;
+            if (resolved == null) {
+                resolved = resolver.get();
+                delegate = resolved;
+            }
+            return resolved.get();
+        }
+    }
+}
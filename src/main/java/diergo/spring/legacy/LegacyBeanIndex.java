@@ -0,0 +1,358 @@
+package diergo.spring.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * A build time index of legacy beans replacing the class path scan on startup.
+ * The index lists the packages scanned and for each bean found its class, the static member providing the bean,
+ * its scope and the kind of member. If an index covering all base packages is found by the post processor,
+ * no class path scan is done at all.
+ * The entries are recorded separately for each post processor together with its rules, so a post processor uses
+ * the entries created by its own rules only and an index created by other rules is not used at all.
+ * Rules containing opaque predicates cannot be recorded, post processors having such rules always scan and
+ * cannot be passed to {@link #main(String...)}.
+ * To create the index, call {@link #main(String...)} during your build passing the file to create and
+ * the static methods creating the post processors, e.g. {@code example.spring.SpringConfig#legacySingletons}.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#indexedBy(String)
+ * @since 1.1
+ */
+public final class LegacyBeanIndex {
+
+    /**
+     * The default location of index files, all index files found will be merged.
+     */
+    public static final String DEFAULT_LOCATION = "classpath*:META-INF/spring-legacy.index";
+
+    private static final String PACKAGE = "package";
+    private static final String FIELD = "field";
+    private static final String METHOD = "method";
+    private static final String RULES = "*";
+    private static final String RULE = "rule";
+    private static final String PROCESSOR = "processor";
+
+    private final List<Part> parts;
+
+    LegacyBeanIndex(Collection<String> packages, Collection<Entry> entries) {
+        this(packages, Collections.emptySet(), entries);
+    }
+
+    LegacyBeanIndex(Collection<String> packages, Collection<String> rules, Collection<Entry> entries) {
+        this(Collections.singletonList(new Part(packages, rules, entries)));
+    }
+
+    private LegacyBeanIndex(List<Part> parts) {
+        this.parts = Collections.unmodifiableList(parts);
+    }
+
+    /**
+     * Create the index file for the post processors.
+     *
+     * @param args the path of the index file followed by the post processor factory methods
+     *             named by the fully qualified class name and the static method name separated by {@code #}
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: LegacyBeanIndex <index file> <class#method>...");
+        }
+        List<LegacyBeanIndex> indexes = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i) {
+            LegacyBeanRegistryPostProcessor processor = createPostProcessor(args[i]);
+            if (processor.getRules() == null) {
+                throw new IllegalArgumentException("Cannot index post processor " + args[i]
+                        + " using opaque predicates");
+            }
+            processor.setEnvironment(new StandardEnvironment());
+            indexes.add(processor.createIndex());
+        }
+        Path file = Paths.get(args[0]);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+            merge(indexes).write(out);
+        }
+    }
+
+    /**
+     * Load and merge all index files found at the location.
+     *
+     * @return the index or {@code null} if no index file exists
+     */
+    static LegacyBeanIndex load(String location, ClassLoader classLoader) {
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        try {
+            Resource[] resources = resolver.getResources(location);
+            if (resources.length == 0) {
+                return null;
+            }
+            List<LegacyBeanIndex> indexes = new ArrayList<>();
+            for (Resource resource : resources) {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(resource.getInputStream(), UTF_8))) {
+                    indexes.add(read(in));
+                }
+            }
+            return merge(indexes);
+        } catch (IOException e) {
+            throw new FatalBeanException("Cannot read legacy bean index from " + location, e);
+        }
+    }
+
+    /**
+     * Read an index, each part created by a single post processor is started by a {@code *=processor} line.
+     * Lines in front of the first of them form a part, too.
+     */
+    static LegacyBeanIndex read(BufferedReader in) throws IOException {
+        List<Part> parts = new ArrayList<>();
+        List<String> packages = new ArrayList<>();
+        List<String> rules = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                throw new IOException("Invalid legacy bean index line: " + line);
+            }
+            String name = line.substring(0, separator);
+            if (RULES.equals(name) && PROCESSOR.equals(line.substring(separator + 1))) {
+                if (!packages.isEmpty() || !rules.isEmpty() || !entries.isEmpty()) {
+                    parts.add(new Part(packages, rules, entries));
+                    packages.clear();
+                    rules.clear();
+                    entries.clear();
+                }
+                continue;
+            }
+            if (RULES.equals(name) && line.startsWith(RULE + ',', separator + 1)) {
+                rules.add(line.substring(separator + RULE.length() + 2));
+                continue;
+            }
+            String[] values = line.substring(separator + 1).split(",");
+            if (PACKAGE.equals(values[0])) {
+                packages.add(name);
+            } else if (values.length == 3 && (FIELD.equals(values[2]) || METHOD.equals(values[2]))) {
+                entries.add(new Entry(name, values[0], values[1], FIELD.equals(values[2])));
+            } else {
+                throw new IOException("Invalid legacy bean index line: " + line);
+            }
+        }
+        if (parts.isEmpty() || !packages.isEmpty() || !rules.isEmpty() || !entries.isEmpty()) {
+            parts.add(new Part(packages, rules, entries));
+        }
+        return merge(Collections.singletonList(new LegacyBeanIndex(parts)));
+    }
+
+    void write(Writer out) throws IOException {
+        out.write("# spring-legacy bean index\n");
+        for (Part part : parts) {
+            if (parts.size() > 1) {
+                out.write(RULES + '=' + PROCESSOR + '\n');
+            }
+            for (String basePackage : part.packages) {
+                out.write(basePackage + '=' + PACKAGE + '\n');
+            }
+            for (String rule : part.rules) {
+                out.write(RULES + '=' + RULE + ',' + rule + '\n');
+            }
+            for (Entry entry : part.entries) {
+                out.write(entry.getClassName() + '=' + entry.getMember() + ',' + entry.getScope() + ','
+                        + (entry.isField() ? FIELD : METHOD) + '\n');
+            }
+        }
+    }
+
+    /**
+     * Check whether the index was created by scanning all passed packages.
+     */
+    boolean covers(String... basePackages) {
+        return Stream.of(basePackages).allMatch(this::covers);
+    }
+
+    /**
+     * Get the part of the index created by post processors having the passed rules.
+     *
+     * @param rules the rules or {@code null} for opaque rules never matching any part
+     * @return the part or {@code null} if no entries were created by the rules
+     * @see LegacyBeanRegistryPostProcessor#getRules()
+     */
+    LegacyBeanIndex forRules(Collection<String> rules) {
+        if (rules == null) {
+            return null;
+        }
+        Set<String> key = new TreeSet<>(rules);
+        return parts.stream()
+                .filter(part -> part.rules.equals(key))
+                .findFirst()
+                .map(part -> new LegacyBeanIndex(Collections.singletonList(part)))
+                .orElse(null);
+    }
+
+    /**
+     * Get all index entries for classes inside the passed packages.
+     */
+    List<Entry> getEntries(String... basePackages) {
+        return parts.stream()
+                .flatMap(part -> part.entries.stream())
+                .filter(entry -> Stream.of(basePackages).anyMatch(basePackage -> inPackage(entry.getClassName(), basePackage)))
+                .collect(toList());
+    }
+
+    /**
+     * Get the packages scanned to create the index.
+     */
+    Set<String> getPackages() {
+        return parts.stream()
+                .flatMap(part -> part.packages.stream())
+                .collect(toCollection(TreeSet::new));
+    }
+
+    private boolean covers(String basePackage) {
+        return parts.stream()
+                .flatMap(part -> part.packages.stream())
+                .anyMatch(indexed -> inPackage(basePackage, indexed));
+    }
+
+    /**
+     * Check whether the name is the package or inside it.
+     */
+    static boolean inPackage(String name, String basePackage) {
+        return name.equals(basePackage) || name.startsWith(basePackage + '.');
+    }
+
+    /**
+     * Merge the parts of all indexes, parts created by the same rules are joined.
+     */
+    private static LegacyBeanIndex merge(List<LegacyBeanIndex> indexes) {
+        Map<Set<String>, Part> parts = new LinkedHashMap<>();
+        indexes.stream()
+                .flatMap(index -> index.parts.stream())
+                .forEach(part -> parts.merge(part.rules, part, Part::join));
+        return new LegacyBeanIndex(new ArrayList<>(parts.values()));
+    }
+
+    /**
+     * Create a post processor by calling the static factory method named by the class name and the method name
+     * separated by {@code #}.
+     */
+    static LegacyBeanRegistryPostProcessor createPostProcessor(String factoryMethod) {
+        int separator = factoryMethod.indexOf('#');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Missing method name in " + factoryMethod);
+        }
+        Method method = CustomizingTypeFilter.getType(factoryMethod.substring(0, separator), null)
+                .map(type -> ReflectionUtils.findMethod(type, factoryMethod.substring(separator + 1)))
+                .orElseThrow(() -> new IllegalArgumentException("Cannot find post processor factory " + factoryMethod));
+        ReflectionUtils.makeAccessible(method);
+        Object processor = ReflectionUtils.invokeMethod(method, null);
+        if (!(processor instanceof LegacyBeanRegistryPostProcessor)) {
+            throw new IllegalArgumentException("No legacy post processor created by " + factoryMethod);
+        }
+        return (LegacyBeanRegistryPostProcessor) processor;
+    }
+
+    /**
+     * The packages scanned and the entries found by post processors having the same rules.
+     */
+    private static final class Part {
+
+        private final Set<String> packages;
+        private final Set<String> rules;
+        private final List<Entry> entries;
+
+        Part(Collection<String> packages, Collection<String> rules, Collection<Entry> entries) {
+            this.packages = Collections.unmodifiableSet(new TreeSet<>(packages));
+            this.rules = Collections.unmodifiableSet(new TreeSet<>(rules));
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(comparing(Entry::getClassName));
+            this.entries = Collections.unmodifiableList(sorted);
+        }
+
+        Part join(Part other) {
+            List<String> joinedPackages = new ArrayList<>(packages);
+            joinedPackages.addAll(other.packages);
+            Map<String, Entry> joinedEntries = new LinkedHashMap<>();
+            entries.forEach(entry -> joinedEntries.put(entry.getClassName(), entry));
+            other.entries.forEach(entry -> joinedEntries.putIfAbsent(entry.getClassName(), entry));
+            return new Part(joinedPackages, rules, joinedEntries.values());
+        }
+    }
+
+    /**
+     * A legacy bean found by the scan.
+     */
+    static final class Entry {
+
+        private final String className;
+        private final String member;
+        private final String scope;
+        private final boolean field;
+
+        Entry(String className, String member, String scope, boolean field) {
+            this.className = className;
+            this.member = member;
+            this.scope = scope;
+            this.field = field;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        String getMember() {
+            return member;
+        }
+
+        String getScope() {
+            return scope;
+        }
+
+        boolean isField() {
+            return field;
+        }
+
+        /**
+         * Configure the bean definition the same way the filter creating the entry does.
+         *
+         * @param classLoader the class loader of the bean class or {@code null} to use the default one
+         */
+        void customize(BeanDefinition bd, ClassLoader classLoader) {
+            if (field) {
+                LegacySingletonFieldFilter.customizeBeanDefinition(member, bd, classLoader);
+            } else {
+                LegacyBeanMethodFilter.customizeBeanDefinition(scope, member, bd);
+            }
+        }
+    }
+}
@@ -39,12 +39,35 @@ class LegacyBeanMethodFilter extends CustomizingTypeFilter<Method> {
                 .findFirst();
     }
 
+    @Override
+    protected Stream<ClassFileMembers.Member> getCandidates(ClassFileMembers members) {
+        return members.getMethods().stream()
+                .filter(method -> method.getParameterCount() == 0);
+    }
+
     @Override
     protected void customizeBeanDefinition(Method access, BeanDefinition bd) {
+        customizeBeanDefinition(scope, access.getName(), bd);
+    }
+
+    @Override
+    protected LegacyBeanIndex.Entry describe(String className, Method access) {
+        return new LegacyBeanIndex.Entry(className, access.getName(), scope, false);
+    }
+
+    /**
+     * Customize the bean definition for a static factory method known by name only.
+     */
+    static void customizeBeanDefinition(String scope, String methodName, BeanDefinition bd) {
         bd.setScope(scope);
         if (SCOPE_SINGLETON.equals(scope)) {
             bd.setLazyInit(true);
         }
-        bd.setFactoryMethodName(access.getName());
+        bd.setFactoryMethodName(methodName);
+    }
+
+    @Override
+    public String toString() {
+        return scope + " methods";
     }
 }
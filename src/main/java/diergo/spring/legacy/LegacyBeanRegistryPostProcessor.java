@@ -1,31 +1,90 @@
 package diergo.spring.legacy;
 
+import static java.util.stream.Collectors.toList;
+
+import diergo.spring.legacy.LegacyScanReport.Phase;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
-import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.beans.factory.config.BeanDefinitionCustomizer;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
-import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionReaderUtils;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanNameGenerator;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.context.ResourceLoaderAware;
 import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
-import org.springframework.core.env.Environment;
-import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
 
 /**
  * A post processor registering all legacy singletons as spring beans.
  *
  * @see LegacyBeanRegistryPostProcessorBuilder
  */
-class LegacyBeanRegistryPostProcessor extends AbstractRegistryPostProcessor {
+class LegacyBeanRegistryPostProcessor extends AbstractRegistryPostProcessor
+        implements BeanClassLoaderAware, ResourceLoaderAware {
+
+    /**
+     * The name of the metadata reader factory shared by Spring Boot with the configuration class parsing.
+     */
+    static final String SHARED_METADATA_READER_FACTORY_BEAN_NAME =
+            "org.springframework.boot.autoconfigure.internalCachingMetadataReaderFactory";
+
+    /**
+     * The flight recorder events compiled separately, only available on JVMs supporting JFR.
+     */
+    private static final Class<?> SCAN_EVENTS = findScanEvents("diergo.spring.legacy.LegacyScanEvents");
+
+    protected final Log logger = LogFactory.getLog(getClass());
 
     private final String[] basePackages;
     private final List<CustomizingTypeFilter<?>> included;
     private final List<Function<BeanDefinitionRegistry, Stream<BeanDefinition>>> factories;
     private final BeanNameGenerator beanNameGenerator;
+    private String indexLocation = LegacyBeanIndex.DEFAULT_LOCATION;
+    private boolean classFileMatching;
+    private Executor scanExecutor;
+    private Consumer<LegacyScanReport> reportConsumer;
+    private boolean generatedSuppliers;
+    private int warmUpThreads;
+    private Duration warmUpDeadline;
+    private Path scanCacheFile;
+    private ClassLoader beanClassLoader;
+    private ResourceLoader resourceLoader;
+    private boolean coordinatedScan;
+    private boolean onDemand;
+    private volatile String[] onDemandPackages;
+    private volatile LegacyScanCoordinator coordinator;
 
     public LegacyBeanRegistryPostProcessor(List<CustomizingTypeFilter<?>> included, List<Function<BeanDefinitionRegistry, Stream<BeanDefinition>>> factories, BeanNameGenerator beanNameGenerator, int order, String... basePackages) {
         this.factories = factories;
@@ -35,51 +94,601 @@ class LegacyBeanRegistryPostProcessor extends AbstractRegistryPostProcessor {
         this.beanNameGenerator = beanNameGenerator;
     }
 
+    /**
+     * Find and load the legacy classes by the class loader of the bean factory instead of the one of this library.
+     */
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.beanClassLoader = classLoader;
+        included.forEach(filter -> filter.setClassLoader(classLoader));
+        factories.stream()
+                .filter(LegacyFactoryBeanScanner.class::isInstance)
+                .forEach(factory -> ((LegacyFactoryBeanScanner) factory).setClassLoader(classLoader));
+    }
 
     /**
-     * Creates a {@link ClassPathBeanDefinitionScanner} with all type filters configured, scans the base packages
-     * and register bean definitions created. Afterwards register bean definitions created from factories configured.
+     * Share the metadata read from class files with the configuration class parsing of the application context.
+     * The context caches the metadata until it has been refreshed.
+     */
+    @Override
+    public void setResourceLoader(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    /**
+     * Use a different location to look up the legacy bean index.
+     *
+     * @see LegacyBeanIndex#DEFAULT_LOCATION
+     */
+    void setIndexLocation(String indexLocation) {
+        this.indexLocation = indexLocation;
+    }
+
+    /**
+     * Enable the check of class files before loading classes to match.
+     *
+     * @see CustomizingTypeFilter#matchClassFile(MetadataReader, MetadataReaderFactory)
+     */
+    void setClassFileMatching(boolean classFileMatching) {
+        this.classFileMatching = classFileMatching;
+    }
+
+    /**
+     * Read and match the classes found by the scan in parallel using the executor.
+     *
+     * @param scanExecutor the executor or {@code null} to scan in the calling thread
+     */
+    void setScanExecutor(Executor scanExecutor) {
+        this.scanExecutor = scanExecutor;
+    }
+
+    /**
+     * Pass the report of each run to the consumer.
+     */
+    void setReportConsumer(Consumer<LegacyScanReport> reportConsumer) {
+        this.reportConsumer = reportConsumer;
+    }
+
+    /**
+     * Enable instance suppliers calling the factory methods of the bean definitions registered directly.
+     *
+     * @see GeneratedSuppliers
+     */
+    void setGeneratedSuppliers(boolean generatedSuppliers) {
+        this.generatedSuppliers = generatedSuppliers;
+    }
+
+    /**
+     * Create the lazy singletons registered after the context has been refreshed.
+     *
+     * @param threads the maximal number of threads warming up beans in parallel
+     * @param deadline the maximal time to wait for the warm up or {@code null} to disable it
+     * @see LegacySingletonWarmUp
+     */
+    void setWarmUp(int threads, Duration deadline) {
+        this.warmUpThreads = threads;
+        this.warmUpDeadline = deadline;
+    }
+
+    /**
+     * Reuse the beans found by former scans inside class path roots not changed since.
+     *
+     * @param scanCacheFile the file to persist the cache or {@code null} to scan all roots
+     * @see LegacyScanCache
+     */
+    void setScanCache(Path scanCacheFile) {
+        this.scanCacheFile = scanCacheFile;
+    }
+
+    /**
+     * Scan together with the other coordinated post processors of the registry.
+     *
+     * @see LegacyScanCoordinator
+     */
+    void setCoordinatedScan(boolean coordinatedScan) {
+        this.coordinatedScan = coordinatedScan;
+    }
+
+    /**
+     * Register no legacy beans up front but on demand when a dependency of their type is resolved.
+     *
+     * @see LegacyOnDemandAutowireCandidateResolver
+     */
+    void setOnDemand(boolean onDemand) {
+        this.onDemand = onDemand;
+    }
+
+    /**
+     * The coordinator of the current scan, if coordinated with other post processors.
+     */
+    LegacyScanCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * Registers the bean definitions listed by the {@link LegacyBeanIndex} for the rules of this post processor if
+     * they cover all base packages.
+     * Otherwise creates a {@link ClassPathBeanDefinitionScanner} with all type filters configured, scans the base
+     * packages and register bean definitions created.
+     * Packages covered by the Spring components index are not scanned, the legacy candidates listed are matched only.
+     * The metadata read from class files is shared with the application context if available.
+     * If coordinated, the first post processor run creates a coordinator for all coordinated post processors of the
+     * registry not run yet, so the packages of all of them are traversed once and their classes are loaded once.
+     * On demand, nothing is scanned but a resolver registering legacy beans on dependency resolution is installed.
+     * If a scan cache is configured, the beans of class path roots unchanged since the last scan are taken from it.
+     * Afterwards register bean definitions created from factories configured.
+     * If enabled, a bean warming up the lazy singletons registered after refresh is registered, too.
+     * The timings of all phases are reported at the end.
      */
     @Override
     protected void postProcess(BeanDefinitionRegistry registry) {
-        ClassPathBeanDefinitionScanner scanner = new LegacyClassPathBeanDefinitionScanner(registry, false, environment,
-                this::customizeBeanDefinition);
+        if (coordinatedScan && !isCoordinated()) {
+            coordinate(registry);
+        }
+        try {
+            postProcess(registry, new LegacyScanRecorder());
+        } finally {
+            LegacyScanCoordinator finished = coordinator;
+            if (finished != null) {
+                coordinator = null;
+                finished.finish(this);
+            }
+        }
+    }
+
+    /**
+     * Close the coordinator after all registry post processors have been run, so its caches are cleared even if
+     * some participants have not scanned.
+     */
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        super.postProcessBeanFactory(beanFactory);
+        LegacyScanCoordinator current = coordinator;
+        if (current != null) {
+            coordinator = null;
+            current.close();
+        }
+    }
+
+    private boolean isCoordinated() {
+        LegacyScanCoordinator current = coordinator;
+        return current != null && !current.isClosed();
+    }
+
+    private void postProcess(BeanDefinitionRegistry registry, LegacyScanRecorder recorder) {
+        Consumer<LegacyScanReport> events = beginScanEvents();
+        if (onDemand) {
+            onDemandPackages = Stream.of(basePackages)
+                    .map(environment::resolveRequiredPlaceholders)
+                    .toArray(String[]::new);
+        }
+        if (onDemand && LegacyOnDemandAutowireCandidateResolver.install(this, registry)) {
+            registerFactories(registry, recorder);
+            report(recorder.toReport(basePackages, false), events);
+            return;
+        }
+        long start = System.nanoTime();
+        List<String> rules = getRules();
+        // entries of opaque rules cannot be told apart from the ones of other post processors
+        LegacyBeanIndex index = rules == null ? null : LegacyBeanIndex.load(indexLocation, beanClassLoader == null
+                ? CustomizingTypeFilter.class.getClassLoader() : beanClassLoader);
+        recorder.recordSince(Phase.INDEX, start);
+        LegacyBeanIndex own = index == null ? null : index.forRules(rules);
+        if (index != null && own == null) {
+            logger.info("Ignoring legacy bean index " + indexLocation + " created by other rules");
+        }
+        boolean indexed = own != null && own.covers(basePackages);
+        if (indexed) {
+            start = System.nanoTime();
+            List<BeanDefinition> definitions = own.getEntries(basePackages).stream()
+                    .map(this::createBeanDefinition)
+                    .collect(toList());
+            recorder.recordSince(Phase.CUSTOMIZATION, start);
+            register(definitions, registry, recorder);
+        } else {
+            startScan();
+            try {
+                if (scanCacheFile == null) {
+                    scan(registry, recorder, null);
+                } else {
+                    scanCached(registry, recorder);
+                }
+            } finally {
+                finishScan();
+            }
+        }
+        registerFactories(registry, recorder);
+        if (warmUpDeadline != null) {
+            registerWarmUp(recorder.getRegistered(), registry);
+        }
+        report(recorder.toReport(basePackages, indexed), events);
+    }
+
+    /**
+     * Inspect the class by the rules and register its bean definition if it matches.
+     * Classes outside the base packages are ignored. The class file is read by a metadata reader factory of its own
+     * dropped afterwards, as the caches shared by the application context are cleared after refresh only.
+     *
+     * @return whether a bean definition has been registered
+     * @see LegacyOnDemandAutowireCandidateResolver
+     */
+    boolean registerOnDemand(String className, BeanDefinitionRegistry registry) {
+        String[] packages = onDemandPackages;
+        if (packages == null || Stream.of(packages).noneMatch(basePackage ->
+                LegacyBeanIndex.inPackage(className, basePackage))) {
+            return false;
+        }
+        LegacyScanRecorder recorder = new LegacyScanRecorder();
+        LegacyClassPathBeanDefinitionScanner scanner = createScanner(registry, recorder, null, null);
+        scanner.setMetadataReaderFactory(new CachingMetadataReaderFactory(
+                scanner.getResourceLoader().getClassLoader()));
+        boolean registered;
+        // the filters cache for one scan at a time
+        synchronized (included) {
+            startScan();
+            try {
+                registered = scanner.scanType(className) > 0;
+            } finally {
+                finishScan();
+                scanner.clearCache();
+            }
+        }
+        if (registered && logger.isDebugEnabled()) {
+            logger.debug("Registered legacy bean of " + className + " on demand");
+        }
+        return registered;
+    }
+
+    /**
+     * Apply the factories one after the other, registering the bean definitions created by each before applying the
+     * next one, so a factory may find a factory bean registered by a former one.
+     */
+    private void registerFactories(BeanDefinitionRegistry registry, LegacyScanRecorder recorder) {
+        BeanDefinitionLookup lookup = new BeanDefinitionLookup(registry);
+        for (Function<BeanDefinitionRegistry, Stream<BeanDefinition>> factory : factories) {
+            long start = System.nanoTime();
+            List<BeanDefinition> definitions = applyFactory(factory, lookup, registry)
+                    .collect(toList());
+            recorder.recordSince(Phase.FACTORIES, start);
+            register(definitions, registry, recorder, lookup);
+        }
+    }
+
+    /**
+     * Scan the base packages and create an index of the legacy beans found.
+     */
+    LegacyBeanIndex createIndex() {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        startScan();
+        try {
+            scan(registry, new LegacyScanRecorder(), null);
+            List<String> rules = getRules();
+            return new LegacyBeanIndex(Arrays.asList(basePackages),
+                    rules == null ? Collections.emptyList() : rules, Stream.of(registry.getBeanDefinitionNames())
+                    .map(name -> describe(registry.getBeanDefinition(name).getBeanClassName()))
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .collect(toList()));
+        } finally {
+            finishScan();
+        }
+    }
+
+    /**
+     * Describe the rules of all filters.
+     *
+     * @return the rules or {@code null} if any filter uses opaque predicates
+     * @see CustomizingTypeFilter#getRules()
+     */
+    List<String> getRules() {
+        List<String> rules = new ArrayList<>();
+        for (CustomizingTypeFilter<?> filter : included) {
+            String rule = filter.getRules();
+            if (rule == null) {
+                return null;
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    /**
+     * Scan the base packages and create the source of an initializer registering the legacy beans found together with
+     * the beans created by the factories.
+     *
+     * @throws IllegalArgumentException if a factory is not known to create beans by factory methods
+     */
+    LegacyBeanSource createSource() {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        List<LegacyBeanSource.Bean> beans = new ArrayList<>();
+        for (LegacyBeanIndex.Entry entry : createIndex().getEntries(basePackages)) {
+            beans.add(LegacyBeanSource.forEntry(generateBeanName(createBeanDefinition(entry), registry), entry,
+                    beanClassLoader));
+        }
+        BeanDefinitionLookup lookup = new BeanDefinitionLookup(registry);
+        for (Function<BeanDefinitionRegistry, Stream<BeanDefinition>> factory : factories) {
+            if (!(factory instanceof LegacyFactoryBeanScanner)) {
+                throw new IllegalArgumentException("Cannot generate source for factory " + factory);
+            }
+            LegacyFactoryBeanScanner scanner = (LegacyFactoryBeanScanner) factory;
+            String factoryBean = scanner.findFactoryBeanName(lookup).orElse(null);
+            scanner.findMethods().forEach(method -> {
+                GenericBeanDefinition bd = new GenericBeanDefinition();
+                bd.setBeanClass(method.getReturnType());
+                String name = generateBeanName(bd, registry);
+                lookup.add(name, bd);
+                beans.add(LegacyBeanSource.forFactoryMethod(name, method, scanner.getScope(), factoryBean));
+            });
+        }
+        return new LegacyBeanSource(beans);
+    }
+
+    private String generateBeanName(BeanDefinition bd, BeanDefinitionRegistry registry) {
+        String name = beanNameGenerator.generateBeanName(bd, registry);
+        registry.registerBeanDefinition(name, bd);
+        return name;
+    }
+
+    /**
+     * Let all filters share the types loaded and cache their access members during a scan.
+     * The caches are dropped afterwards by {@link #finishScan()} to not keep the classes.
+     */
+    private void startScan() {
+        LegacyScanCoordinator current = coordinator;
+        Map<String, Optional<Class<?>>> typeCache = current == null ? new ConcurrentHashMap<>() : current.getTypeCache();
+        included.forEach(filter -> filter.startScan(typeCache));
+    }
+
+    private void finishScan() {
+        included.forEach(CustomizingTypeFilter::finishScan);
+    }
+
+    private Optional<LegacyBeanIndex.Entry> describe(String className) {
+        return included.stream()
+                .map(included -> included.describe(className))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+    }
+
+    /**
+     * Scan the class path roots changed since the last scan only and register the beans cached for all others
+     * in the order of the roots.
+     * The cache is updated by the beans found afterwards.
+     */
+    private void scanCached(BeanDefinitionRegistry registry, LegacyScanRecorder recorder) {
+        long start = System.nanoTime();
+        LegacyScanCache cache = LegacyScanCache.read(scanCacheFile, Arrays.asList(basePackages), getRules());
+        recorder.recordSince(Phase.INDEX, start);
+        scan(registry, recorder, cache);
+        try {
+            for (String name : recorder.getRegistered()) {
+                BeanDefinition bd = registry.getBeanDefinition(name);
+                if (bd.getSource() instanceof Resource) {
+                    Optional<LegacyBeanIndex.Entry> entry = describe(bd.getBeanClassName());
+                    if (entry.isPresent()) {
+                        cache.add((Resource) bd.getSource(), entry.get());
+                    }
+                }
+            }
+            cache.write();
+        } catch (IOException e) {
+            logger.warn("Cannot write legacy scan cache " + scanCacheFile, e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Reused " + cache.getReusedRoots() + " of " + cache.getRoots()
+                    + " class path roots from legacy scan cache " + scanCacheFile);
+        }
+    }
+
+    private void scan(BeanDefinitionRegistry registry, LegacyScanRecorder recorder, LegacyScanCache cache) {
+        LegacyScanCoordinator current = coordinator;
+        MetadataReaderFactory sharedMetadataReaderFactory = current == null
+                ? getSharedMetadataReaderFactory(registry) : current.getMetadataReaderFactory();
+        LegacyClassPathBeanDefinitionScanner scanner = createScanner(registry, recorder, cache,
+                sharedMetadataReaderFactory);
+        if (current != null) {
+            scanner.setCoordinator(current);
+        }
+        if (cache != null) {
+            scanner.setCachedBeans(entries -> {
+                long start = System.nanoTime();
+                List<BeanDefinition> definitions = entries.stream()
+                        .map(this::createBeanDefinition)
+                        .collect(toList());
+                recorder.recordSince(Phase.CUSTOMIZATION, start);
+                register(definitions, registry, recorder);
+            });
+        }
+        try {
+            scanner.scan(basePackages);
+        } finally {
+            if (sharedMetadataReaderFactory == null) {
+                scanner.clearCache();
+            }
+        }
+    }
+
+    /**
+     * Create a scanner with all type filters configured.
+     *
+     * @param metadataReaderFactory the factory shared or {@code null} to use a private one
+     */
+    private LegacyClassPathBeanDefinitionScanner createScanner(BeanDefinitionRegistry registry,
+                                                               LegacyScanRecorder recorder, LegacyScanCache cache,
+                                                               MetadataReaderFactory metadataReaderFactory) {
+        LegacyClassPathBeanDefinitionScanner scanner = new LegacyClassPathBeanDefinitionScanner(registry,
+                environment, bd -> customizeBeanDefinition(bd, registry, recorder), scanExecutor, recorder, cache,
+                beanClassLoader);
         scanner.setBeanNameGenerator(beanNameGenerator);
-        included.forEach(scanner::addIncludeFilter);
-        scanner.scan(basePackages);
-        factories.stream()
-                .flatMap(factory -> factory.apply(registry))
+        if (metadataReaderFactory != null) {
+            scanner.setMetadataReaderFactory(metadataReaderFactory);
+        }
+        for (int i = 0; i < included.size(); ++i) {
+            CustomizingTypeFilter<?> filter = included.get(i);
+            scanner.addIncludeFilter(recorder.recordMatching((i + 1) + ". " + filter, toTypeFilter(filter)));
+        }
+        return scanner;
+    }
+
+    /**
+     * Create a coordinator for this and all other coordinated post processors of the registry not run yet.
+     * Post processors not registered as beans scan on their own.
+     */
+    private void coordinate(BeanDefinitionRegistry registry) {
+        List<LegacyBeanRegistryPostProcessor> participants = new ArrayList<>();
+        participants.add(this);
+        if (registry instanceof ListableBeanFactory) {
+            ((ListableBeanFactory) registry).getBeansOfType(LegacyBeanRegistryPostProcessor.class, false, false)
+                    .values().stream()
+                    .filter(peer -> peer != this && peer.coordinatedScan && !peer.isCoordinated()
+                            && !peer.isPostProcessed(registry))
+                    .forEach(participants::add);
+        }
+        List<String> packagePaths = participants.stream()
+                .flatMap(participant -> Stream.of(participant.basePackages)
+                        .map(basePackage -> ClassUtils.convertClassNameToResourcePath(
+                                participant.environment.resolveRequiredPlaceholders(basePackage))))
+                .collect(toList());
+        ResourcePatternResolver resolver = ResourcePatternUtils.getResourcePatternResolver(
+                registry instanceof ResourceLoader ? (ResourceLoader) registry
+                        : beanClassLoader == null ? null : new PathMatchingResourcePatternResolver(beanClassLoader));
+        LegacyScanCoordinator created = new LegacyScanCoordinator(packagePaths, participants, resolver,
+                getSharedMetadataReaderFactory(registry));
+        participants.forEach(participant -> participant.coordinator = created);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Coordinating legacy scan of " + participants.size() + " post processors");
+        }
+    }
+
+    /**
+     * Get the metadata reader factory registered by Spring Boot or else one caching in the resource cache of the
+     * application context. Both are cleared by the context after refresh.
+     *
+     * @return the factory or {@code null} to use a private one cleared after the scan
+     */
+    private MetadataReaderFactory getSharedMetadataReaderFactory(BeanDefinitionRegistry registry) {
+        if (registry instanceof BeanFactory) {
+            BeanFactory beanFactory = (BeanFactory) registry;
+            if (beanFactory.containsBean(SHARED_METADATA_READER_FACTORY_BEAN_NAME)) {
+                return beanFactory.getBean(SHARED_METADATA_READER_FACTORY_BEAN_NAME, MetadataReaderFactory.class);
+            }
+        }
+        if (resourceLoader instanceof DefaultResourceLoader) {
+            return new CachingMetadataReaderFactory(resourceLoader);
+        }
+        return null;
+    }
+
+    private TypeFilter toTypeFilter(CustomizingTypeFilter<?> filter) {
+        if (!classFileMatching) {
+            return filter;
+        }
+        return (metadataReader, metadataReaderFactory) ->
+                filter.matchClassFile(metadataReader, metadataReaderFactory)
+                        && filter.match(metadataReader, metadataReaderFactory);
+    }
+
+    private BeanDefinition createBeanDefinition(LegacyBeanIndex.Entry entry) {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+        bd.setBeanClassName(entry.getClassName());
+        entry.customize(bd, beanClassLoader);
+        return bd;
+    }
+
+    private void register(List<BeanDefinition> definitions, BeanDefinitionRegistry registry, LegacyScanRecorder recorder) {
+        register(definitions, registry, recorder, null);
+    }
+
+    /**
+     * Register the bean definitions not registered yet and add them to the lookup if passed.
+     */
+    private void register(List<BeanDefinition> definitions, BeanDefinitionRegistry registry, LegacyScanRecorder recorder,
+                          BeanDefinitionLookup lookup) {
+        long start = System.nanoTime();
+        definitions.stream()
+                .map(TargetTypes::resolve)
                 .map(bd -> new BeanDefinitionHolder(bd, beanNameGenerator.generateBeanName(bd, registry)))
                 .filter(bdh -> !registry.containsBeanDefinition(bdh.getBeanName()))
-                .forEach(bdh -> BeanDefinitionReaderUtils.registerBeanDefinition(bdh, registry));
+                .forEach(bdh -> {
+                    if (generatedSuppliers) {
+                        GeneratedSuppliers.customize(bdh.getBeanDefinition(), registry);
+                    }
+                    BeanDefinitionReaderUtils.registerBeanDefinition(bdh, registry);
+                    recorder.recordRegistration(bdh.getBeanName());
+                    if (lookup != null) {
+                        lookup.add(bdh.getBeanName(), bdh.getBeanDefinition());
+                    }
+                });
+        recorder.recordSince(Phase.REGISTRATION, start);
     }
 
-    private void customizeBeanDefinition(BeanDefinition bd) {
-        included.stream()
-                .filter(included -> included.supports(bd))
-                .findFirst()
-                .ifPresent(included -> included.customize(bd));
+    /**
+     * Let the factory scanners share a single lookup instead of searching the registry each.
+     * Other factories returning {@code null} create no bean definitions.
+     */
+    private static Stream<BeanDefinition> applyFactory(Function<BeanDefinitionRegistry, Stream<BeanDefinition>> factory,
+                                                      BeanDefinitionLookup lookup, BeanDefinitionRegistry registry) {
+        if (factory instanceof LegacyFactoryBeanScanner) {
+            return ((LegacyFactoryBeanScanner) factory).apply(lookup);
+        }
+        Stream<BeanDefinition> created = factory.apply(registry);
+        return created == null ? Stream.empty() : created;
     }
 
-    private static class LegacyClassPathBeanDefinitionScanner extends ClassPathBeanDefinitionScanner {
+    private void registerWarmUp(List<String> beanNames, BeanDefinitionRegistry registry) {
+        RootBeanDefinition bd = new RootBeanDefinition(LegacySingletonWarmUp.class);
+        bd.getConstructorArgumentValues().addGenericArgumentValue(new ArrayList<>(beanNames));
+        bd.getConstructorArgumentValues().addGenericArgumentValue(warmUpThreads);
+        bd.getConstructorArgumentValues().addGenericArgumentValue(warmUpDeadline);
+        bd.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        BeanDefinitionReaderUtils.registerWithGeneratedName(bd, registry);
+    }
 
-        private final BeanDefinitionCustomizer additionalCustomizer;
+    /**
+     * Start the flight recorder events of a run if available.
+     *
+     * @return the events to pass the report to or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private static Consumer<LegacyScanReport> beginScanEvents() {
+        return SCAN_EVENTS == null ? null : (Consumer<LegacyScanReport>) BeanUtils.instantiateClass(SCAN_EVENTS);
+    }
 
-        LegacyClassPathBeanDefinitionScanner(BeanDefinitionRegistry registry, boolean useDefaultFilters, Environment environment, BeanDefinitionCustomizer additionalCustomizer) {
-            super(registry, useDefaultFilters, environment);
-            this.additionalCustomizer = additionalCustomizer;
+    private static Class<?> findScanEvents(String className) {
+        ClassLoader classLoader = LegacyBeanRegistryPostProcessor.class.getClassLoader();
+        if (!ClassUtils.isPresent("jdk.jfr.Event", classLoader)) {
+            return null;
+        }
+        try {
+            return ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
         }
+    }
 
-        @Override
-        protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
-            AnnotationMetadata metadata = beanDefinition.getMetadata();
-            return metadata.isIndependent() && !metadata.isInterface();
+    private void customizeBeanDefinition(BeanDefinition bd, BeanDefinitionRegistry registry,
+                                         LegacyScanRecorder recorder) {
+        long start = System.nanoTime();
+        included.stream()
+                .filter(included -> included.supports(bd))
+                .findFirst()
+                .ifPresent(included -> included.customize(bd));
+        if (generatedSuppliers) {
+            GeneratedSuppliers.customize(bd, registry);
         }
+        recorder.recordSince(Phase.CUSTOMIZATION, start);
+    }
 
-        @Override
-        protected void postProcessBeanDefinition(AbstractBeanDefinition beanDefinition, String beanName) {
-            super.postProcessBeanDefinition(beanDefinition, beanName);
-            additionalCustomizer.customize(beanDefinition);
+    private void report(LegacyScanReport report, Consumer<LegacyScanReport> events) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(report);
+        }
+        if (events != null) {
+            events.accept(report);
+        }
+        if (reportConsumer != null) {
+            reportConsumer.accept(report);
         }
     }
 }
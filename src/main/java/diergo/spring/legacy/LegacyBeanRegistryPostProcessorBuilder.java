@@ -7,11 +7,15 @@ import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SING
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.springframework.beans.FatalBeanException;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -46,6 +50,16 @@ public class LegacyBeanRegistryPostProcessorBuilder {
     private final List<Function<BeanDefinitionRegistry, Stream<BeanDefinition>>> factories = new ArrayList<>();
     private BeanNameGenerator beanNameGenerator = BeanDefinitionReaderUtils::generateBeanName;
     private int order = Ordered.LOWEST_PRECEDENCE;
+    private String indexLocation = LegacyBeanIndex.DEFAULT_LOCATION;
+    private boolean classFileMatching;
+    private Executor scanExecutor;
+    private Consumer<LegacyScanReport> reportConsumer;
+    private boolean generatedSuppliers;
+    private int warmUpThreads;
+    private Duration warmUpDeadline;
+    private Path scanCacheFile;
+    private boolean coordinatedScan;
+    private boolean onDemand;
 
     private LegacyBeanRegistryPostProcessorBuilder(String... basePackages) {
         this.basePackages = basePackages;
@@ -71,6 +85,135 @@ public class LegacyBeanRegistryPostProcessorBuilder {
         return this;
     }
 
+    /**
+     * Use a different location to look up the build time index of legacy beans.
+     * If an index covering all base packages is found there, it is used instead of scanning the class path.
+     *
+     * @param location the resource location, may contain patterns
+     * @see LegacyBeanIndex#DEFAULT_LOCATION
+     */
+    public LegacyBeanRegistryPostProcessorBuilder indexedBy(String location) {
+        this.indexLocation = location;
+        return this;
+    }
+
+    /**
+     * Check the class files of scanned classes for static members of their own type before loading them.
+     * Classes without any candidate member are rejected without being loaded, so only classes with candidates
+     * are loaded to apply the additional checks on their members.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder classFileMatching() {
+        this.classFileMatching = true;
+        return this;
+    }
+
+    /**
+     * Read and match the classes found by the scan in parallel using the common fork join pool.
+     *
+     * @see #parallelScan(Executor)
+     */
+    public LegacyBeanRegistryPostProcessorBuilder parallelScan() {
+        return parallelScan(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Read and match the classes found by the scan in parallel using the executor.
+     * The bean definitions are registered afterwards in the order of the classes found by the calling thread.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder parallelScan(Executor executor) {
+        this.scanExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Pass the report with timings and filter statistics of each post processor run to the consumer.
+     * The reports are also logged on debug level and committed as flight recorder events if available.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder reportingTo(Consumer<LegacyScanReport> reportConsumer) {
+        this.reportConsumer = reportConsumer;
+        return this;
+    }
+
+    /**
+     * Create beans from legacy factory methods by instance suppliers calling the methods directly.
+     * The suppliers are generated on first bean creation, so creating many prototypes avoids the reflective
+     * resolution and invocation of the factory method by the bean factory.
+     * Methods of factory beans are supported only if the post processor is applied to a bean factory.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder generatedSuppliers() {
+        this.generatedSuppliers = true;
+        return this;
+    }
+
+    /**
+     * Create the lazy legacy singletons after the context has been refreshed using a thread for each processor.
+     *
+     * @see #warmUp(int, Duration)
+     */
+    public LegacyBeanRegistryPostProcessorBuilder warmUp(Duration deadline) {
+        return warmUp(Runtime.getRuntime().availableProcessors(), deadline);
+    }
+
+    /**
+     * Create the lazy legacy singletons after the context has been refreshed, so the first usage does not pay
+     * for their static initialization.
+     * Their classes are initialized in parallel in the background, so the refresh does not wait for the warm up.
+     * The beans are created one after the other afterwards, as the bean factory serializes singleton creation.
+     * Beans not started to be warmed up until the deadline are left to be created on first usage.
+     *
+     * @param threads the maximal number of threads initializing classes in parallel
+     * @param deadline the maximal time to start warming up beans
+     */
+    public LegacyBeanRegistryPostProcessorBuilder warmUp(int threads, Duration deadline) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed to warm up, got " + threads);
+        }
+        this.warmUpThreads = threads;
+        this.warmUpDeadline = deadline;
+        return this;
+    }
+
+    /**
+     * Persist the beans found by the scan in a file and scan only class path roots changed since on next start.
+     * A jar is seen as unchanged if its size and modification time are, a directory if the paths, sizes and
+     * modification times of its class files are.
+     * Post processors may share the file, each keeps the roots of its own base packages and rules.
+     * The cache does not reflect changes of opaque predicates, so the file has to be deleted if they change.
+     * A bean index found is used instead of the cache.
+     *
+     * @param file the cache file, created if missing
+     */
+    public LegacyBeanRegistryPostProcessorBuilder scanCache(Path file) {
+        this.scanCacheFile = file;
+        return this;
+    }
+
+    /**
+     * Scan together with all other post processors of the registry configured this way.
+     * The packages of all of them are traversed once by the post processor running first, the class files are read
+     * and the classes are loaded once, too. Only the class files listed and the classes loaded are shared, each post
+     * processor matches the classes of its own packages by its own rules and registers its own beans.
+     * Only post processors registered as beans are coordinated.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder coordinatedScan() {
+        this.coordinatedScan = true;
+        return this;
+    }
+
+    /**
+     * Register no legacy beans up front but when a dependency of their type is resolved and no bean of it exists.
+     * Only the dependency type is inspected by the rules, so the legacy packages are never scanned.
+     * Beans of factories are registered up front anyway.
+     * Requires a bean factory using the autowire candidate resolver of annotation configured contexts, otherwise the
+     * packages are scanned.
+     * Legacy code looking up beans by {@link LegacySpringAccess} does not register them, so use this only if
+     * all legacy beans needed are injected.
+     */
+    public LegacyBeanRegistryPostProcessorBuilder onDemand() {
+        this.onDemand = true;
+        return this;
+    }
+
     /**
      * Start to configure singleton bean registration.
      */
@@ -88,10 +231,10 @@ public class LegacyBeanRegistryPostProcessorBuilder {
     /**
      * Start to configure a factory bean.
      *
-     * @param type the fully qualified name of the factory bean type
+     * @param type the fully qualified name of the factory bean type, loaded by the bean class loader
      */
     public FactoryBuilder factory(String type) {
-        return new FactoryBuilder(() -> CustomizingTypeFilter.getType(type)
+        return new FactoryBuilder(classLoader -> CustomizingTypeFilter.getType(type, classLoader)
                 .orElseThrow(() -> new FatalBeanException("Cannot inspect bean type " + type)));
     }
 
@@ -99,7 +242,7 @@ public class LegacyBeanRegistryPostProcessorBuilder {
      * Start to configure a factory bean.
      */
     public FactoryBuilder factory(Class<?> type) {
-        return new FactoryBuilder(() -> type);
+        return new FactoryBuilder(classLoader -> type);
     }
 
     /**
@@ -114,7 +257,18 @@ public class LegacyBeanRegistryPostProcessorBuilder {
             included.add(new LegacyBeanMethodFilter(SCOPE_SINGLETON, anyGetter()));
             included.add(new LegacySingletonFieldFilter(anyConstant()));
         }
-        return new LegacyBeanRegistryPostProcessor(included, factories, beanNameGenerator, order, basePackages);
+        LegacyBeanRegistryPostProcessor processor = new LegacyBeanRegistryPostProcessor(included, factories,
+                beanNameGenerator, order, basePackages);
+        processor.setIndexLocation(indexLocation);
+        processor.setClassFileMatching(classFileMatching);
+        processor.setScanExecutor(scanExecutor);
+        processor.setReportConsumer(reportConsumer);
+        processor.setGeneratedSuppliers(generatedSuppliers);
+        processor.setWarmUp(warmUpThreads, warmUpDeadline);
+        processor.setScanCache(scanCacheFile);
+        processor.setCoordinatedScan(coordinatedScan);
+        processor.setOnDemand(onDemand);
+        return processor;
     }
 
     private abstract class Builder {
@@ -147,6 +301,16 @@ public class LegacyBeanRegistryPostProcessorBuilder {
         public LegacyBeanRegistryPostProcessorBuilder methods(Predicate<? super Method> memberCheck) {
             return addIncluded(new LegacyBeanMethodFilter(SCOPE_SINGLETON, memberCheck));
         }
+
+        /**
+         * Register singleton beans of classes implementing the singleton pattern, detected from their class files.
+         * A class with private constructors only and a single static field of its own type assigned in its static
+         * initializer or a static method returning its own type is registered without being loaded.
+         * Configure this before other rules, as they load the classes they check.
+         */
+        public LegacyBeanRegistryPostProcessorBuilder singletonPattern() {
+            return addIncluded(new LegacySingletonPatternFilter());
+        }
     }
 
     /**
@@ -170,9 +334,9 @@ public class LegacyBeanRegistryPostProcessorBuilder {
      */
     public class FactoryBuilder {
 
-        private final Supplier<Class<?>> type;
+        private final Function<ClassLoader, Class<?>> type;
 
-        private FactoryBuilder(Supplier<Class<?>> type) {
+        private FactoryBuilder(Function<ClassLoader, Class<?>> type) {
             this.type = type;
         }
 
@@ -0,0 +1,200 @@
+package diergo.spring.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SINGLETON;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The Java source of an application context initializer registering legacy beans ahead of time.
+ * Each bean is registered with a supplier calling the static member or the method of the factory bean directly,
+ * so neither a class path scan nor reflection is needed on startup.
+ * A factory bean registered by the post processors is got by its name and the beans created by it depend on it,
+ * other factory beans are got by their type.
+ * To create the source, call {@link #main(String...)} during your build passing the source directory,
+ * the fully qualified name of the initializer class to create and the static methods creating the post processors,
+ * e.g. {@code example.spring.SpringConfig#legacySingletons}.
+ * The initializer has to be added to the context instead of the post processors.
+ * Only public members of public classes can be called by the initializer. Checked exceptions declared by a method
+ * are thrown as {@link org.springframework.beans.factory.BeanCreationException}.
+ *
+ * @see LegacyBeanIndex
+ * @since 1.1
+ */
+public final class LegacyBeanSource {
+
+    private final List<Bean> beans;
+
+    LegacyBeanSource(Collection<Bean> beans) {
+        this.beans = Collections.unmodifiableList(new ArrayList<>(beans));
+    }
+
+    /**
+     * Create the source file of the initializer for the post processors.
+     *
+     * @param args the source directory and the fully qualified name of the initializer class followed by
+     *             the post processor factory methods named by the fully qualified class name and the static method
+     *             name separated by {@code #}
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: LegacyBeanSource <source dir> <class name> <class#method>...");
+        }
+        List<Bean> beans = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            LegacyBeanRegistryPostProcessor processor = LegacyBeanIndex.createPostProcessor(args[i]);
+            processor.setEnvironment(new StandardEnvironment());
+            beans.addAll(processor.createSource().beans);
+        }
+        Path file = Paths.get(args[0], ClassUtils.convertClassNameToResourcePath(args[1]) + ".java");
+        Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+            new LegacyBeanSource(beans).write(args[1], out);
+        }
+    }
+
+    /**
+     * Create a bean provided by a static field or method described by an index entry.
+     */
+    static Bean forEntry(String name, LegacyBeanIndex.Entry entry, ClassLoader classLoader) {
+        Class<?> type = CustomizingTypeFilter.getType(entry.getClassName(), classLoader)
+                .orElseThrow(() -> new IllegalArgumentException("Cannot load legacy class " + entry.getClassName()));
+        if (entry.isField()) {
+            Field field = ReflectionUtils.findField(type, entry.getMember());
+            if (field == null) {
+                throw new IllegalArgumentException("Cannot find static field " + entry.getMember() + " of " + type);
+            }
+            checkAccessible(field);
+            return new Bean(name, field.getType(), typeName(type) + '.' + field.getName(), SCOPE_SINGLETON, true,
+                null, false);
+        }
+        Method method = ReflectionUtils.findMethod(type, entry.getMember());
+        if (method == null) {
+            throw new IllegalArgumentException("Cannot find static method " + entry.getMember() + " of " + type);
+        }
+        checkAccessible(method);
+        return new Bean(name, method.getReturnType(), typeName(type) + '.' + method.getName() + "()",
+                entry.getScope(), SCOPE_SINGLETON.equals(entry.getScope()), null, throwsChecked(method));
+    }
+
+    /**
+     * Create a bean provided by a method of a factory bean.
+     *
+     * @param factoryBean the name of the factory bean or {@code null} to look it up by its type
+     */
+    static Bean forFactoryMethod(String name, Method method, String scope, String factoryBean) {
+        checkAccessible(method);
+        String lookup = factoryBean == null ? "" : '"' + escape(factoryBean) + "\", ";
+        return new Bean(name, method.getReturnType(), "context.getBean(" + lookup
+                + typeName(method.getDeclaringClass()) + ".class)." + method.getName() + "()", scope, false,
+                factoryBean, throwsChecked(method));
+    }
+
+    void write(String className, Writer out) throws IOException {
+        String packageName = ClassUtils.getPackageName(className);
+        if (!packageName.isEmpty()) {
+            out.write("package " + packageName + ";\n\n");
+        }
+        out.write("import org.springframework.context.ApplicationContextInitializer;\n");
+        out.write("import org.springframework.context.support.GenericApplicationContext;\n\n");
+        out.write("/**\n * Registers the legacy beans found ahead of time, generated by spring-legacy.\n */\n");
+        out.write("public class " + ClassUtils.getShortName(className)
+                + " implements ApplicationContextInitializer<GenericApplicationContext> {\n\n");
+        out.write("    @Override\n");
+        out.write("    public void initialize(GenericApplicationContext context) {\n");
+        for (Bean bean : beans) {
+            out.write("        context.registerBean(\"" + escape(bean.name) + "\", " + typeName(bean.type) + ".class,\n");
+            if (bean.checked) {
+                out.write("                () -> {\n");
+                out.write("                    try {\n");
+                out.write("                        return " + bean.expression + ";\n");
+                out.write("                    } catch (RuntimeException | Error e) {\n");
+                out.write("                        throw e;\n");
+                out.write("                    } catch (Throwable e) {\n");
+                out.write("                        throw new org.springframework.beans.factory.BeanCreationException(\""
+                        + escape(bean.name) + "\", \"Legacy bean creation failed\", e);\n");
+                out.write("                    }\n");
+                out.write("                },\n");
+            } else {
+                out.write("                () -> " + bean.expression + ",\n");
+            }
+            out.write("                bd -> {\n");
+            out.write("                    bd.setScope(\"" + escape(bean.scope) + "\");\n");
+            if (bean.lazy) {
+                out.write("                    bd.setLazyInit(true);\n");
+            }
+            if (bean.dependsOn != null) {
+                out.write("                    bd.setDependsOn(\"" + escape(bean.dependsOn) + "\");\n");
+            }
+            out.write("                });\n");
+        }
+        out.write("    }\n}\n");
+    }
+
+    private static void checkAccessible(Member member) {
+        boolean accessible = Modifier.isPublic(member.getModifiers());
+        for (Class<?> type = member.getDeclaringClass(); accessible && type != null; type = type.getEnclosingClass()) {
+            accessible = Modifier.isPublic(type.getModifiers());
+        }
+        if (!accessible) {
+            throw new IllegalArgumentException("Cannot generate access to non public " + member);
+        }
+    }
+
+    private static boolean throwsChecked(Method method) {
+        for (Class<?> exception : method.getExceptionTypes()) {
+            if (!RuntimeException.class.isAssignableFrom(exception) && !Error.class.isAssignableFrom(exception)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String typeName(Class<?> type) {
+        return ClassUtils.getQualifiedName(type).replace('$', '.');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * A legacy bean together with the Java expression providing it.
+     */
+    static final class Bean {
+
+        private final String name;
+        private final Class<?> type;
+        private final String expression;
+        private final String scope;
+        private final boolean lazy;
+        private final String dependsOn;
+        private final boolean checked;
+
+        private Bean(String name, Class<?> type, String expression, String scope, boolean lazy, String dependsOn,
+                     boolean checked) {
+            this.name = name;
+            this.type = type;
+            this.expression = expression;
+            this.scope = scope;
+            this.lazy = lazy;
+            this.dependsOn = dependsOn;
+            this.checked = checked;
+        }
+    }
+}
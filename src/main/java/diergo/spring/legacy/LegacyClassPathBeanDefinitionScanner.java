@@ -0,0 +1,278 @@
+package diergo.spring.legacy;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import diergo.spring.legacy.LegacyScanReport.Phase;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionCustomizer;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A scanner accepting any independent class as candidate, customizing the bean definitions created.
+ * If an executor is passed, the class files found are read and matched in parallel.
+ * If the Spring components index lists the legacy candidates of a package, only their class files are read.
+ * Such packages bypass both the scan cache and the coordinator.
+ * A single type can be scanned to register legacy beans on demand.
+ * Otherwise the class files are found by the coordinator set or by traversing the package.
+ * If a scan cache is passed, the class files of class path roots unchanged since the last scan are skipped and the
+ * beans cached for these roots are registered in between the beans scanned, keeping the order of a full scan.
+ * If a class loader is passed, it is used to find the class files unless the registry is a resource loader itself.
+ * The bean definitions customized with a known target type are registered as root bean definitions.
+ * All phases of the scan are recorded.
+ * The candidates are returned in the order of the resources found anyway, so they are registered
+ * deterministically by the calling thread.
+ *
+ * @see LegacyBeanRegistryPostProcessor
+ */
+class LegacyClassPathBeanDefinitionScanner extends ClassPathBeanDefinitionScanner {
+
+    private static final String RESOURCE_PATTERN = "**/*.class";
+
+    private final BeanDefinitionCustomizer additionalCustomizer;
+    private final Executor executor;
+    private final LegacyScanRecorder recorder;
+    private final LegacyScanCache scanCache;
+    private final Deque<String> pendingRoots = new ArrayDeque<>();
+    private Consumer<List<LegacyBeanIndex.Entry>> cachedBeans = entries -> { };
+    private LegacyScanCoordinator coordinator;
+    private String singleType;
+
+    LegacyClassPathBeanDefinitionScanner(BeanDefinitionRegistry registry, Environment environment,
+                                         BeanDefinitionCustomizer additionalCustomizer, Executor executor,
+                                         LegacyScanRecorder recorder, LegacyScanCache scanCache,
+                                         ClassLoader classLoader) {
+        super(registry, false, environment);
+        this.additionalCustomizer = additionalCustomizer;
+        this.executor = executor;
+        this.recorder = recorder;
+        this.scanCache = scanCache;
+        if (classLoader != null && !(registry instanceof ResourceLoader)) {
+            setResourceLoader(new PathMatchingResourcePatternResolver(classLoader));
+        }
+        if (executor != null && !(getResourceLoader() instanceof DefaultResourceLoader)) {
+            // the local cache used otherwise reads all class files one after the other
+            setMetadataReaderFactory(new CachingMetadataReaderFactory(
+                    new DefaultResourceLoader(getResourceLoader().getClassLoader())));
+        }
+    }
+
+    /**
+     * Take the class files from the coordinator instead of traversing the packages.
+     */
+    void setCoordinator(LegacyScanCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Register the beans of the class path roots reused from the scan cache.
+     */
+    void setCachedBeans(Consumer<List<LegacyBeanIndex.Entry>> registration) {
+        this.cachedBeans = registration;
+    }
+
+    /**
+     * Register the bean definition of the class only, if it is a candidate.
+     * The annotation config processors are not registered.
+     *
+     * @return the number of bean definitions registered
+     */
+    int scanType(String className) {
+        setIncludeAnnotationConfig(false);
+        singleType = className;
+        try {
+            return scan(ClassUtils.getPackageName(className));
+        } finally {
+            singleType = null;
+        }
+    }
+
+    @Override
+    protected Set<BeanDefinitionHolder> doScan(String... basePackages) {
+        Set<BeanDefinitionHolder> registered = super.doScan(basePackages);
+        registerCachedBeans(null);
+        return registered;
+    }
+
+    @Override
+    public Set<BeanDefinition> findCandidateComponents(String basePackage) {
+        registerCachedBeans(null);
+        String packagePath = resolveBasePackage(basePackage);
+        String packagePattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + packagePath + '/';
+        try {
+            long start = System.nanoTime();
+            ResourcePatternResolver resolver = ResourcePatternUtils.getResourcePatternResolver(getResourceLoader());
+            Set<String> listed = singleType != null ? Collections.singleton(singleType)
+                    : LegacyComponentsIndex.getCandidateTypes(
+                    CandidateComponentsIndexLoader.loadIndex(resolver.getClassLoader()),
+                    ClassUtils.convertResourcePathToClassName(packagePath));
+            recorder.recordSince(Phase.INDEX, start);
+            start = System.nanoTime();
+            Resource[] resources;
+            if (listed != null) {
+                if (singleType == null && logger.isDebugEnabled()) {
+                    logger.debug("Using " + listed.size() + " legacy candidates of package " + basePackage
+                            + " listed by the components index");
+                }
+                resources = listed.stream()
+                        .map(type -> resolver.getResource(ResourceLoader.CLASSPATH_URL_PREFIX
+                                + ClassUtils.convertClassNameToResourcePath(type) + ClassUtils.CLASS_FILE_SUFFIX))
+                        .toArray(Resource[]::new);
+            } else {
+                resources = coordinator == null ? resolver.getResources(packagePattern + RESOURCE_PATTERN)
+                        : coordinator.getResources(packagePath);
+                if (scanCache != null) {
+                    resources = skipCached(resolver.getResources(packagePattern), resources);
+                }
+            }
+            recorder.recordSince(Phase.RESOURCES, start);
+            Stream<BeanDefinition> candidates;
+            if (executor == null) {
+                candidates = Stream.of(resources).map(this::createCandidate);
+            } else {
+                List<CompletableFuture<BeanDefinition>> futures = Stream.of(resources)
+                        .map(resource -> CompletableFuture.supplyAsync(() -> createCandidate(resource), executor))
+                        .collect(toList());
+                candidates = futures.stream().map(CompletableFuture::join);
+            }
+            return candidates
+                    .filter(Objects::nonNull)
+                    .collect(LinkedHashSet::new, Set::add, Set::addAll);
+        } catch (IOException e) {
+            throw new BeanDefinitionStoreException("I/O failure during classpath scanning", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+        AnnotationMetadata metadata = beanDefinition.getMetadata();
+        return metadata.isIndependent() && !metadata.isInterface();
+    }
+
+    @Override
+    protected void postProcessBeanDefinition(AbstractBeanDefinition beanDefinition, String beanName) {
+        super.postProcessBeanDefinition(beanDefinition, beanName);
+        additionalCustomizer.customize(beanDefinition);
+    }
+
+    @Override
+    protected void registerBeanDefinition(BeanDefinitionHolder definitionHolder, BeanDefinitionRegistry registry) {
+        Object source = definitionHolder.getBeanDefinition().getSource();
+        if (!pendingRoots.isEmpty() && source instanceof Resource) {
+            try {
+                registerCachedBeans(((Resource) source).getURL().toString());
+            } catch (IOException e) {
+                throw new BeanDefinitionStoreException("Cannot locate legacy candidate " + source, e);
+            }
+        }
+        long start = System.nanoTime();
+        super.registerBeanDefinition(new BeanDefinitionHolder(
+                TargetTypes.resolve(definitionHolder.getBeanDefinition()), definitionHolder.getBeanName(),
+                definitionHolder.getAliases()), registry);
+        recorder.recordRegistration(definitionHolder.getBeanName());
+        recorder.recordSince(Phase.REGISTRATION, start);
+    }
+
+    /**
+     * Register the beans cached for the roots found before the root of a class file.
+     *
+     * @param url the URL of the class file scanned or {@code null} to register the beans of all roots left
+     */
+    private void registerCachedBeans(String url) {
+        while (!pendingRoots.isEmpty() && (url == null || !url.startsWith(pendingRoots.peek()))) {
+            List<LegacyBeanIndex.Entry> entries = scanCache.getReused(pendingRoots.poll());
+            if (!entries.isEmpty()) {
+                cachedBeans.accept(entries);
+            }
+        }
+    }
+
+    /**
+     * Group the class files by the package roots they are found in and skip the ones of roots cached.
+     * The roots are remembered to register their cached beans in order.
+     */
+    private Resource[] skipCached(Resource[] roots, Resource[] resources) throws IOException {
+        Map<String, List<Resource>> grouped = new LinkedHashMap<>();
+        for (Resource root : roots) {
+            grouped.put(root.getURL().toString(), new ArrayList<>());
+        }
+        List<Resource> scanned = new ArrayList<>();
+        for (Resource resource : resources) {
+            String url = resource.getURL().toString();
+            Optional<List<Resource>> root = grouped.entrySet().stream()
+                    .filter(group -> url.startsWith(group.getKey()))
+                    .max(comparing(group -> group.getKey().length()))
+                    .map(Map.Entry::getValue);
+            if (root.isPresent()) {
+                root.get().add(resource);
+            } else {
+                scanned.add(resource);
+            }
+        }
+        for (Map.Entry<String, List<Resource>> root : grouped.entrySet()) {
+            if (!scanCache.reuse(root.getKey(), root.getValue())) {
+                scanned.addAll(root.getValue());
+            }
+            pendingRoots.add(root.getKey());
+        }
+        return scanned.toArray(new Resource[0]);
+    }
+
+    private BeanDefinition createCandidate(Resource resource) {
+        if (!resource.isReadable()) {
+            return null;
+        }
+        try {
+            MetadataReader metadataReader = getMetadataReaderFactory().getMetadataReader(resource);
+            if (!isCandidateComponent(metadataReader)) {
+                return null;
+            }
+            ScannedGenericBeanDefinition sbd = new ScannedGenericBeanDefinition(metadataReader);
+            sbd.setResource(resource);
+            sbd.setSource(resource);
+            return isCandidateComponent(sbd) ? sbd : null;
+        } catch (IOException | RuntimeException e) {
+            throw new BeanDefinitionStoreException("Failed to read candidate component class: " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package diergo.spring.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toCollection;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.springframework.context.index.CandidateComponentsIndex;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.StringUtils;
+
+/**
+ * Legacy candidates in the Spring components index {@code META-INF/spring.components}.
+ * The index lists the classes of legacy beans found with the {@link #CANDIDATE_STEREOTYPE legacy stereotype}
+ * and the packages scanned with the {@link #PACKAGE_STEREOTYPE package stereotype}.
+ * If the index lists all base packages, only the classes listed are matched instead of scanning the class path.
+ * The rules of the post processors are not recorded, but the classes listed still have to match them.
+ * Beware that Spring uses the index for all component scans as soon as an index file exists, so add the
+ * legacy candidates only to an index created by the {@code spring-context-indexer} or use {@link LegacyBeanIndex}.
+ * To add the candidates, call {@link #main(String...)} during your build after the indexer ran passing the index
+ * file and the static methods creating the post processors, e.g. {@code example.spring.SpringConfig#legacySingletons}.
+ *
+ * @see org.springframework.context.index.CandidateComponentsIndexLoader#COMPONENTS_RESOURCE_LOCATION
+ * @since 1.1
+ */
+public final class LegacyComponentsIndex {
+
+    /**
+     * The stereotype of legacy bean classes.
+     */
+    public static final String CANDIDATE_STEREOTYPE = "diergo.spring.legacy.LegacyBean";
+    /**
+     * The stereotype of packages scanned for legacy beans.
+     */
+    public static final String PACKAGE_STEREOTYPE = "diergo.spring.legacy.LegacyPackage";
+
+    private LegacyComponentsIndex() {
+    }
+
+    /**
+     * Add the legacy candidates of the post processors to the components index file.
+     * Entries already existing are kept, so the index may be created by the {@code spring-context-indexer} before.
+     *
+     * @param args the path of the index file followed by the post processor factory methods
+     *             named by the fully qualified class name and the static method name separated by {@code #}
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: LegacyComponentsIndex <index file> <class#method>...");
+        }
+        Path file = Paths.get(args[0]);
+        Map<String, Set<String>> components = new TreeMap<>();
+        if (Files.exists(file)) {
+            try (Reader in = Files.newBufferedReader(file, UTF_8)) {
+                read(in, components);
+            }
+        }
+        for (int i = 1; i < args.length; ++i) {
+            LegacyBeanRegistryPostProcessor processor = LegacyBeanIndex.createPostProcessor(args[i]);
+            processor.setEnvironment(new StandardEnvironment());
+            add(processor.createIndex(), components);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+            write(components, out);
+        }
+    }
+
+    /**
+     * Get the legacy candidates of the package listed by the index.
+     *
+     * @return the class names sorted or {@code null} if the package is not covered by the index
+     */
+    static Set<String> getCandidateTypes(CandidateComponentsIndex index, String basePackage) {
+        if (index == null || basePackage.indexOf('*') >= 0 || basePackage.indexOf('?') >= 0
+                || index.getCandidateTypes("", PACKAGE_STEREOTYPE).stream()
+                .noneMatch(indexed -> LegacyBeanIndex.inPackage(basePackage, indexed))) {
+            return null;
+        }
+        return index.getCandidateTypes(basePackage, CANDIDATE_STEREOTYPE).stream()
+                .filter(type -> LegacyBeanIndex.inPackage(type, basePackage))
+                .collect(toCollection(TreeSet::new));
+    }
+
+    static void read(Reader in, Map<String, Set<String>> components) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        properties.stringPropertyNames().forEach(type -> Stream.of(
+                StringUtils.commaDelimitedListToStringArray(properties.getProperty(type)))
+                .map(String::trim)
+                .filter(stereotype -> !stereotype.isEmpty())
+                .forEach(stereotype -> addStereotype(components, type, stereotype)));
+    }
+
+    static void add(LegacyBeanIndex index, Map<String, Set<String>> components) {
+        index.getPackages().forEach(basePackage -> addStereotype(components, basePackage, PACKAGE_STEREOTYPE));
+        index.getEntries(index.getPackages().toArray(new String[0]))
+                .forEach(entry -> addStereotype(components, entry.getClassName(), CANDIDATE_STEREOTYPE));
+    }
+
+    static void write(Map<String, Set<String>> components, Writer out) throws IOException {
+        for (Map.Entry<String, Set<String>> component : components.entrySet()) {
+            out.write(component.getKey() + '=' + String.join(",", component.getValue()) + '\n');
+        }
+    }
+
+    private static void addStereotype(Map<String, Set<String>> components, String type, String stereotype) {
+        components.computeIfAbsent(type, key -> new TreeSet<>()).add(stereotype);
+    }
+}
@@ -3,13 +3,12 @@ package diergo.spring.legacy;
 import static org.springframework.util.ReflectionUtils.getAllDeclaredMethods;
 
 import java.lang.reflect.Method;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.springframework.beans.FatalBeanException;
 import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.beans.factory.config.BeanDefinitionHolder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
 
@@ -21,11 +20,16 @@ import org.springframework.beans.factory.support.GenericBeanDefinition;
  */
 class LegacyFactoryBeanScanner implements Function<BeanDefinitionRegistry, Stream<BeanDefinition>> {
 
-    private final Supplier<Class<?>> type;
+    private final Function<ClassLoader, Class<?>> type;
     private final Predicate<? super Method> methodCheck;
     private final String scope;
+    private volatile ClassLoader classLoader;
 
-    public LegacyFactoryBeanScanner(Supplier<Class<?>> type, Predicate<? super Method> methodCheck, String scope) {
+    /**
+     * @param type the function loading the factory bean type by the class loader set, {@code null} for the default one
+     */
+    public LegacyFactoryBeanScanner(Function<ClassLoader, Class<?>> type, Predicate<? super Method> methodCheck,
+                                    String scope) {
         this.type = type;
         this.methodCheck = MemberPredicates.withoutParameters()
                 .and(MemberPredicates.returningBeanType())
@@ -36,25 +40,54 @@ class LegacyFactoryBeanScanner implements Function<BeanDefinitionRegistry, Strea
         this.scope = scope;
     }
 
+    /**
+     * Load the factory bean type by the class loader passed instead of the default one.
+     */
+    void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
     /**
      * Find the bean definition with the required type and create bean definitions for each matching method.
      */
     @Override
     public Stream<BeanDefinition> apply(BeanDefinitionRegistry registry) {
-        Class<?> clazz = type.get();
-        String factoryBean = findFactoryBean(clazz, registry);
-        return Stream.of(getAllDeclaredMethods(clazz))
+        return apply(new BeanDefinitionLookup(registry));
+    }
+
+    /**
+     * Find the bean definition with the required type using the lookup shared by all scanners of a post processor run
+     * and create bean definitions for each matching method.
+     */
+    Stream<BeanDefinition> apply(BeanDefinitionLookup lookup) {
+        Class<?> clazz = type.apply(classLoader);
+        String factoryBean = findFactoryBeanName(lookup)
+                .orElseThrow(() -> new FatalBeanException("Missing factory bean of type " + clazz));
+        return Stream.of(lookup.getAllMethods(clazz))
                 .filter(methodCheck)
                 .map(method -> createBeanDefinition(factoryBean, method));
     }
 
-    private String findFactoryBean(Class<?> type, BeanDefinitionRegistry registry) {
-        return Stream.of(registry.getBeanDefinitionNames())
-                .map(name -> new BeanDefinitionHolder(registry.getBeanDefinition(name), name))
-                .filter(bdh -> type.getName().equals(bdh.getBeanDefinition().getBeanClassName()))
-                .map(BeanDefinitionHolder::getBeanName)
-                .findAny()
-                .orElseThrow(() -> new FatalBeanException("Missing factory bean of type " + type));
+    /**
+     * Find the name of the factory bean definition with the required type.
+     */
+    Optional<String> findFactoryBeanName(BeanDefinitionLookup lookup) {
+        return lookup.findBeanName(type.apply(classLoader).getName());
+    }
+
+    /**
+     * Find the matching factory methods without looking up the factory bean definition.
+     */
+    Stream<Method> findMethods() {
+        return Stream.of(getAllDeclaredMethods(type.apply(classLoader)))
+                .filter(methodCheck);
+    }
+
+    /**
+     * Get the scope of the beans created.
+     */
+    String getScope() {
+        return scope;
     }
 
     private GenericBeanDefinition createBeanDefinition(String factoryBean, Method method) {
@@ -64,6 +97,7 @@ class LegacyFactoryBeanScanner implements Function<BeanDefinitionRegistry, Strea
         bd.setBeanClass(method.getReturnType());
         bd.setScope(scope);
         bd.setDependsOn(factoryBean);
+        TargetTypes.customize(bd, method);
         return bd;
     }
 }
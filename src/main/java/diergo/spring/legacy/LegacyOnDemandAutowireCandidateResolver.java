@@ -0,0 +1,114 @@
+package diergo.spring.legacy;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.AutowireCandidateResolver;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+
+/**
+ * Registers legacy beans on demand when a dependency is resolved, instead of scanning the legacy packages up front.
+ * If no bean of the dependency type exists, the type is inspected by the rules of the post processors and its
+ * bean definition is registered if it matches, so the bean factory finds it as candidate afterwards.
+ * Each type is inspected once only, concurrent resolutions of the same type wait for the first one, resolutions
+ * of the same type while it is inspected by the same thread do not.
+ * Legacy beans looked up by type only, e.g. by {@link LegacySpringAccess}, are not registered on demand.
+ * The resolver replaces the resolver of annotation configured contexts only. As it extends that one, it is kept when
+ * the annotation config processors are registered again. A bean factory using another resolver, e.g. the simple one
+ * not supporting annotations, keeps it, as replacing it would enable {@code @Value}, {@code @Qualifier} and
+ * {@code @Lazy}.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#onDemand()
+ */
+class LegacyOnDemandAutowireCandidateResolver extends ContextAnnotationAutowireCandidateResolver {
+
+    private final DefaultListableBeanFactory beanFactory;
+    private final List<LegacyBeanRegistryPostProcessor> processors = new CopyOnWriteArrayList<>();
+    private final Map<String, CompletableFuture<Boolean>> inspected = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<String>> inspecting = ThreadLocal.withInitial(HashSet::new);
+
+    private LegacyOnDemandAutowireCandidateResolver(DefaultListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * Install the resolver for the post processor if the registry is a bean factory using the resolver of annotation
+     * configured contexts.
+     *
+     * @return whether the legacy beans of the post processor will be registered on demand
+     */
+    static boolean install(LegacyBeanRegistryPostProcessor processor, BeanDefinitionRegistry registry) {
+        if (!(registry instanceof DefaultListableBeanFactory)) {
+            return false;
+        }
+        DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) registry;
+        AutowireCandidateResolver current = beanFactory.getAutowireCandidateResolver();
+        LegacyOnDemandAutowireCandidateResolver resolver;
+        if (current instanceof LegacyOnDemandAutowireCandidateResolver) {
+            resolver = (LegacyOnDemandAutowireCandidateResolver) current;
+        } else if (current.getClass() == ContextAnnotationAutowireCandidateResolver.class) {
+            resolver = new LegacyOnDemandAutowireCandidateResolver(beanFactory);
+            beanFactory.setAutowireCandidateResolver(resolver);
+        } else {
+            return false;
+        }
+        resolver.processors.add(processor);
+        return true;
+    }
+
+    /**
+     * Register the legacy bean of the dependency type before the candidates are searched.
+     */
+    @Override
+    public Object getSuggestedValue(DependencyDescriptor descriptor) {
+        Object value = super.getSuggestedValue(descriptor);
+        if (value == null) {
+            Class<?> type = descriptor.getDependencyType();
+            if (!type.isPrimitive() && !type.isArray()) {
+                inspect(type);
+            }
+        }
+        return value;
+    }
+
+    private void inspect(Class<?> type) {
+        CompletableFuture<Boolean> inspection = new CompletableFuture<>();
+        CompletableFuture<Boolean> current = inspected.putIfAbsent(type.getName(), inspection);
+        if (current != null) {
+            // waits outside of the map, the registration may take locks of the bean factory
+            if (!inspecting.get().contains(type.getName())) {
+                current.join();
+            }
+            return;
+        }
+        inspecting.get().add(type.getName());
+        try {
+            inspection.complete(registerOnDemand(type));
+        } catch (RuntimeException | Error e) {
+            inspected.remove(type.getName(), inspection);
+            inspection.complete(false);
+            throw e;
+        } finally {
+            Set<String> types = inspecting.get();
+            types.remove(type.getName());
+            if (types.isEmpty()) {
+                inspecting.remove();
+            }
+        }
+    }
+
+    private boolean registerOnDemand(Class<?> type) {
+        if (BeanFactoryUtils.beanNamesForTypeIncludingAncestors(beanFactory, type, true, false).length > 0) {
+            return false;
+        }
+        return processors.stream().anyMatch(processor -> processor.registerOnDemand(type.getName(), beanFactory));
+    }
+}
@@ -0,0 +1,278 @@
+package diergo.spring.legacy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * A cache of the legacy beans found by former scans, persisted between restarts.
+ * The beans are cached for each class path root of a scanned package, a package directory or a package inside a jar,
+ * together with a fingerprint of the root: the size and modification time of the jar or a checksum of the paths,
+ * sizes and modification times of the class files inside a directory.
+ * Only the classes of roots with a changed fingerprint are scanned again, the beans of all other roots are taken
+ * from the cache.
+ * The cache file is read at once and replaced after each scan.
+ * Post processors sharing a cache file keep their roots apart, keyed by their base packages and rules, so a change of
+ * them invalidates the cache. Rules containing opaque predicates cannot be described, so the cache has to be deleted
+ * if they change.
+ * An unreadable cache file is logged and replaced, all roots are scanned in this case.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#scanCache(Path)
+ */
+final class LegacyScanCache {
+
+    private static final Log LOGGER = LogFactory.getLog(LegacyScanCache.class);
+
+    private static final int MAGIC = 0x4c534332;
+
+    private final Path file;
+    private final String key;
+    private final Map<String, Root> cached;
+    private final Map<String, Root> current = new LinkedHashMap<>();
+
+    private LegacyScanCache(Path file, String key, Map<String, Root> cached) {
+        this.file = file;
+        this.key = key;
+        this.cached = cached;
+    }
+
+    /**
+     * Read the roots of a post processor from the cache file.
+     * A missing or unreadable file results in an empty cache, so all roots will be scanned.
+     *
+     * @param basePackages the base packages of the post processor
+     * @param rules the rules of the post processor or {@code null} if they cannot be described
+     * @see LegacyBeanRegistryPostProcessor#getRules()
+     */
+    static LegacyScanCache read(Path file, Collection<String> basePackages, Collection<String> rules) {
+        String key = String.join(",", basePackages) + '\n' + (rules == null ? "" : String.join("\n", rules));
+        return new LegacyScanCache(file, key, read(file).getOrDefault(key, Collections.emptyMap()));
+    }
+
+    /**
+     * Check whether the classes found inside a root are unchanged since the last scan.
+     * The root is remembered to be written by {@link #write()} together with the beans cached
+     * or the beans added by {@link #add(Resource, LegacyBeanIndex.Entry)} if it has to be scanned again.
+     *
+     * @param root the URL of the scanned package inside a class path root
+     * @param resources the class files found inside the root
+     * @return whether the beans of the root are cached
+     */
+    boolean reuse(String root, List<Resource> resources) throws IOException {
+        long fingerprint = fingerprint(root, resources);
+        Root former = cached.get(root);
+        boolean reused = former != null && former.fingerprint == fingerprint;
+        current.put(root, reused ? former.reused() : new Root(fingerprint, new ArrayList<>(), false));
+        return reused;
+    }
+
+    /**
+     * Remember a bean found by scanning a class file of a root not cached.
+     */
+    void add(Resource resource, LegacyBeanIndex.Entry entry) throws IOException {
+        String url = resource.getURL().toString();
+        current.entrySet().stream()
+                .filter(root -> !root.getValue().reused && url.startsWith(root.getKey()))
+                .max(comparing(root -> root.getKey().length()))
+                .ifPresent(root -> root.getValue().entries.add(entry));
+    }
+
+    /**
+     * Get the beans of a root if reused from the cache.
+     *
+     * @return the beans in the order they have been found or an empty list if the root has been scanned
+     */
+    List<LegacyBeanIndex.Entry> getReused(String root) {
+        Root seen = current.get(root);
+        return seen == null || !seen.reused ? Collections.emptyList() : seen.entries;
+    }
+
+    /**
+     * Get the number of roots reused from the cache.
+     */
+    long getReusedRoots() {
+        return current.values().stream().filter(root -> root.reused).count();
+    }
+
+    /**
+     * Get the number of all roots seen since reading the cache.
+     */
+    int getRoots() {
+        return current.size();
+    }
+
+    /**
+     * Replace the roots of the post processor in the cache file by all roots seen since reading it.
+     * The roots of other post processors are kept.
+     */
+    void write() throws IOException {
+        Map<String, Map<String, Root>> sections = new LinkedHashMap<>(read(file));
+        sections.put(key, current);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(sections.size());
+                for (Map.Entry<String, Map<String, Root>> section : sections.entrySet()) {
+                    writeString(out, section.getKey());
+                    write(out, section.getValue());
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(DataOutputStream out, Map<String, Root> roots) throws IOException {
+        out.writeInt(roots.size());
+        for (Map.Entry<String, Root> root : roots.entrySet()) {
+            writeString(out, root.getKey());
+            out.writeLong(root.getValue().fingerprint);
+            out.writeInt(root.getValue().entries.size());
+            for (LegacyBeanIndex.Entry entry : root.getValue().entries) {
+                writeString(out, entry.getClassName());
+                writeString(out, entry.getMember());
+                writeString(out, entry.getScope());
+                out.writeBoolean(entry.isField());
+            }
+        }
+    }
+
+    /**
+     * Read the roots of all post processors by their keys.
+     */
+    private static Map<String, Map<String, Root>> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyMap();
+        }
+        try {
+            // read to the heap, a mapping is released by garbage collection only and blocks replacing the file
+            return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException | RuntimeException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Ignoring unreadable legacy scan cache " + file, e);
+            }
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Map<String, Map<String, Root>> read(ByteBuffer in) {
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("No legacy scan cache");
+        }
+        int size = readSize(in);
+        Map<String, Map<String, Root>> sections = new LinkedHashMap<>();
+        for (int i = 0; i < size; ++i) {
+            sections.put(readString(in), readRoots(in));
+        }
+        return sections;
+    }
+
+    private static Map<String, Root> readRoots(ByteBuffer in) {
+        int roots = readSize(in);
+        Map<String, Root> cached = new LinkedHashMap<>();
+        for (int i = 0; i < roots; ++i) {
+            String root = readString(in);
+            long fingerprint = in.getLong();
+            int size = readSize(in);
+            List<LegacyBeanIndex.Entry> entries = new ArrayList<>(size);
+            for (int j = 0; j < size; ++j) {
+                entries.add(new LegacyBeanIndex.Entry(readString(in), readString(in), readString(in), in.get() != 0));
+            }
+            cached.put(root, new Root(fingerprint, entries, false));
+        }
+        return cached;
+    }
+
+    private long fingerprint(String root, List<Resource> resources) throws IOException {
+        CRC32 checksum = new CRC32();
+        URL url = new URL(root);
+        if (ResourceUtils.isJarURL(url)) {
+            File jar = ResourceUtils.getFile(ResourceUtils.extractJarFileURL(url));
+            update(checksum, jar.length());
+            update(checksum, jar.lastModified());
+        } else {
+            List<Resource> sorted = new ArrayList<>(resources);
+            sorted.sort(comparing(Resource::getDescription));
+            for (Resource resource : sorted) {
+                checksum.update(resource.getDescription().getBytes(UTF_8));
+                update(checksum, resource.contentLength());
+                update(checksum, resource.lastModified());
+            }
+        }
+        return checksum.getValue();
+    }
+
+    private static void update(CRC32 checksum, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            checksum.update((int) (value >>> shift));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readSize(in)];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readSize(ByteBuffer in) {
+        int size = in.getInt();
+        if (size < 0 || size > in.remaining()) {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+        return size;
+    }
+
+    private static final class Root {
+
+        private final long fingerprint;
+        private final List<LegacyBeanIndex.Entry> entries;
+        private final boolean reused;
+
+        private Root(long fingerprint, List<LegacyBeanIndex.Entry> entries, boolean reused) {
+            this.fingerprint = fingerprint;
+            this.entries = entries;
+            this.reused = reused;
+        }
+
+        private Root reused() {
+            return new Root(fingerprint, entries, true);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package diergo.spring.legacy;
+
+import static java.util.Comparator.comparing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+/**
+ * Coordinates the scans of several post processors of a registry by sharing the listing of class files and the
+ * classes loaded: the class path is traversed once for the packages of all of them, and each class file is read and
+ * each class is loaded once only.
+ * The rules are not evaluated once for all of them, every post processor still matches the classes of its own
+ * packages by its own rules and registers its own beans.
+ * The resources found are kept until all post processors participating have finished their scan or the coordinator
+ * is closed, whatever happens first.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#coordinatedScan()
+ */
+final class LegacyScanCoordinator {
+
+    private static final String RESOURCE_PATTERN = "**/*.class";
+
+    private final Set<String> roots;
+    private final ResourcePatternResolver resolver;
+    private final MetadataReaderFactory metadataReaderFactory;
+    private final boolean privateMetadataReaderFactory;
+    private final Map<String, Optional<Class<?>>> typeCache = new ConcurrentHashMap<>();
+    private final Map<String, List<ClassResource>> resources = new HashMap<>();
+    private final Set<Object> participants = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int traversals;
+    private boolean closed;
+
+    /**
+     * @param packagePaths the resource paths of the base packages of all participants
+     * @param metadataReaderFactory the factory shared with the context or {@code null} to use a private one
+     */
+    LegacyScanCoordinator(Collection<String> packagePaths, Collection<?> participants,
+                          ResourcePatternResolver resolver, MetadataReaderFactory metadataReaderFactory) {
+        this.roots = new TreeSet<>();
+        packagePaths.stream()
+                .filter(path -> packagePaths.stream().noneMatch(other -> !other.equals(path) && inPackage(path, other)))
+                .forEach(roots::add);
+        this.participants.addAll(participants);
+        this.resolver = resolver;
+        this.privateMetadataReaderFactory = metadataReaderFactory == null;
+        // backed by the concurrent cache of the resource loader to read in parallel
+        this.metadataReaderFactory = privateMetadataReaderFactory
+                ? new CachingMetadataReaderFactory(new DefaultResourceLoader(resolver.getClassLoader()))
+                : metadataReaderFactory;
+    }
+
+    /**
+     * Get the class files inside the package.
+     * The package root containing it is traversed on first request.
+     *
+     * @param packagePath the resource path of the package
+     */
+    synchronized Resource[] getResources(String packagePath) throws IOException {
+        String root = roots.stream()
+                .filter(candidate -> inPackage(packagePath, candidate))
+                .findFirst()
+                .orElse(packagePath);
+        List<ClassResource> found = resources.get(root);
+        if (found == null) {
+            found = traverse(root);
+            resources.put(root, found);
+        }
+        return found.stream()
+                .filter(resource -> inPackage(resource.path, packagePath))
+                .map(resource -> resource.resource)
+                .toArray(Resource[]::new);
+    }
+
+    /**
+     * The class cache shared by the filters of all participants.
+     */
+    Map<String, Optional<Class<?>>> getTypeCache() {
+        return typeCache;
+    }
+
+    MetadataReaderFactory getMetadataReaderFactory() {
+        return metadataReaderFactory;
+    }
+
+    /**
+     * The number of package roots traversed so far.
+     */
+    synchronized int getTraversals() {
+        return traversals;
+    }
+
+    /**
+     * Called by each participant after its scan, the coordinator is closed after the last one.
+     */
+    synchronized void finish(Object participant) {
+        participants.remove(participant);
+        if (participants.isEmpty()) {
+            close();
+        }
+    }
+
+    /**
+     * Clear all caches, even if some participants have not finished their scan.
+     */
+    synchronized void close() {
+        closed = true;
+        participants.clear();
+        resources.clear();
+        typeCache.clear();
+        if (privateMetadataReaderFactory) {
+            ((CachingMetadataReaderFactory) metadataReaderFactory).clearCache();
+        }
+    }
+
+    /**
+     * Check whether the caches have been cleared, so participants not run yet have to scan on their own.
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Find all class files of the package root and determine their paths relative to the class path roots.
+     */
+    private List<ClassResource> traverse(String root) throws IOException {
+        ++traversals;
+        String packagePattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + root + '/';
+        List<String> rootUrls = new ArrayList<>();
+        for (Resource rootResource : resolver.getResources(packagePattern)) {
+            rootUrls.add(rootResource.getURL().toString());
+        }
+        List<ClassResource> found = new ArrayList<>();
+        for (Resource resource : resolver.getResources(packagePattern + RESOURCE_PATTERN)) {
+            String url = resource.getURL().toString();
+            Optional<String> rootUrl = rootUrls.stream()
+                    .filter(url::startsWith)
+                    .max(comparing(String::length));
+            String path;
+            if (rootUrl.isPresent()) {
+                path = root + '/' + url.substring(rootUrl.get().length());
+            } else {
+                int index = url.lastIndexOf(root + '/');
+                path = index < 0 ? url : url.substring(index);
+            }
+            found.add(new ClassResource(path, resource));
+        }
+        return found;
+    }
+
+    private static boolean inPackage(String path, String packagePath) {
+        return path.equals(packagePath) || path.startsWith(packagePath + '/');
+    }
+
+    private static final class ClassResource {
+
+        private final String path;
+        private final Resource resource;
+
+        ClassResource(String path, Resource resource) {
+            this.path = path;
+            this.resource = resource;
+        }
+    }
+}
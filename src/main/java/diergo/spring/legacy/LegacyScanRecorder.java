@@ -0,0 +1,102 @@
+package diergo.spring.legacy;
+
+import static java.util.stream.Collectors.toList;
+
+import diergo.spring.legacy.LegacyScanReport.FilterStatistics;
+import diergo.spring.legacy.LegacyScanReport.Phase;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.springframework.core.type.filter.TypeFilter;
+
+/**
+ * Collects the timings and filter statistics of a post processor run, also from parallel threads.
+ *
+ * @see LegacyScanReport
+ */
+final class LegacyScanRecorder {
+
+    private final Map<Phase, LongAdder> durations = new EnumMap<>(Phase.class);
+    private final List<FilterRecorder> filters = new ArrayList<>();
+    private final List<String> registered = new ArrayList<>();
+
+    LegacyScanRecorder() {
+        Stream.of(Phase.values()).forEach(phase -> durations.put(phase, new LongAdder()));
+    }
+
+    /**
+     * Add the time elapsed since the start to the phase.
+     *
+     * @param start the start as got by {@link System#nanoTime()}
+     */
+    void recordSince(Phase phase, long start) {
+        durations.get(phase).add(System.nanoTime() - start);
+    }
+
+    /**
+     * Count the registration of a bean, called by the registering thread only.
+     */
+    void recordRegistration(String beanName) {
+        registered.add(beanName);
+    }
+
+    /**
+     * The names of all beans registered in the order of registration.
+     */
+    List<String> getRegistered() {
+        return registered;
+    }
+
+    /**
+     * Wrap the type filter to count and time its matches.
+     * Has to be called before the scan starts, the name is used for the statistics.
+     */
+    TypeFilter recordMatching(String name, TypeFilter filter) {
+        FilterRecorder recorder = new FilterRecorder(name);
+        filters.add(recorder);
+        return (metadataReader, metadataReaderFactory) -> {
+            long start = System.nanoTime();
+            try {
+                boolean matches = filter.match(metadataReader, metadataReaderFactory);
+                if (matches) {
+                    recorder.matched.increment();
+                }
+                return matches;
+            } finally {
+                recorder.inspected.increment();
+                long elapsed = System.nanoTime() - start;
+                recorder.duration.add(elapsed);
+                durations.get(Phase.MATCHING).add(elapsed);
+            }
+        };
+    }
+
+    LegacyScanReport toReport(String[] basePackages, boolean indexed) {
+        Map<Phase, Duration> phases = new EnumMap<>(Phase.class);
+        durations.forEach((phase, nanos) -> {
+            if (nanos.sum() > 0) {
+                phases.put(phase, Duration.ofNanos(nanos.sum()));
+            }
+        });
+        return new LegacyScanReport(basePackages, indexed, phases, filters.stream()
+                .map(filter -> new FilterStatistics(filter.name, filter.inspected.sum(), filter.matched.sum(),
+                        Duration.ofNanos(filter.duration.sum())))
+                .collect(toList()), registered.size());
+    }
+
+    private static final class FilterRecorder {
+
+        private final String name;
+        private final LongAdder inspected = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder duration = new LongAdder();
+
+        private FilterRecorder(String name) {
+            this.name = name;
+        }
+    }
+}
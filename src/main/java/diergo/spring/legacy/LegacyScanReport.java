@@ -0,0 +1,170 @@
+package diergo.spring.legacy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a legacy bean post processor run with timings for each phase and statistics for each filter.
+ * Phases executed in parallel report the time accumulated over all threads.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#reportingTo(java.util.function.Consumer)
+ * @since 1.1
+ */
+public final class LegacyScanReport {
+
+    /**
+     * The phases of a post processor run.
+     */
+    public enum Phase {
+        /**
+         * Looking up and reading the legacy bean index.
+         */
+        INDEX,
+        /**
+         * Finding the class files to scan.
+         */
+        RESOURCES,
+        /**
+         * Matching the class files by all filters.
+         */
+        MATCHING,
+        /**
+         * Customizing the bean definitions created.
+         */
+        CUSTOMIZATION,
+        /**
+         * Finding factory beans and their methods creating beans.
+         */
+        FACTORIES,
+        /**
+         * Registering the bean definitions.
+         */
+        REGISTRATION
+    }
+
+    private final List<String> basePackages;
+    private final boolean indexed;
+    private final Map<Phase, Duration> durations;
+    private final List<FilterStatistics> filters;
+    private final int registered;
+
+    LegacyScanReport(String[] basePackages, boolean indexed, Map<Phase, Duration> durations,
+                     List<FilterStatistics> filters, int registered) {
+        this.basePackages = Collections.unmodifiableList(Arrays.asList(basePackages.clone()));
+        this.indexed = indexed;
+        this.durations = Collections.unmodifiableMap(new EnumMap<>(durations));
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        this.registered = registered;
+    }
+
+    public List<String> getBasePackages() {
+        return basePackages;
+    }
+
+    /**
+     * Whether the beans have been registered from an index instead of a class path scan.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * The time spent in a phase.
+     */
+    public Duration getDuration(Phase phase) {
+        return durations.getOrDefault(phase, Duration.ZERO);
+    }
+
+    /**
+     * The time spent in all phases.
+     */
+    public Duration getTotalDuration() {
+        return durations.values().stream().reduce(Duration.ZERO, Duration::plus);
+    }
+
+    /**
+     * The statistics of all filters in the order they are configured.
+     */
+    public List<FilterStatistics> getFilters() {
+        return filters;
+    }
+
+    /**
+     * The number of bean definitions registered.
+     */
+    public int getRegistered() {
+        return registered;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("legacy beans of ").append(basePackages)
+                .append(indexed ? " from index" : " from scan")
+                .append(": ").append(registered).append(" registered in ").append(getTotalDuration().toMillis())
+                .append("ms");
+        durations.forEach((phase, duration) -> report.append(", ").append(phase.name().toLowerCase())
+                .append(' ').append(duration.toMillis()).append("ms"));
+        filters.forEach(filter -> report.append(", ").append(filter));
+        return report.toString();
+    }
+
+    /**
+     * The statistics of a single filter.
+     */
+    public static final class FilterStatistics {
+
+        private final String name;
+        private final long inspected;
+        private final long matched;
+        private final Duration duration;
+
+        FilterStatistics(String name, long inspected, long matched, Duration duration) {
+            this.name = name;
+            this.inspected = inspected;
+            this.matched = matched;
+            this.duration = duration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The number of classes inspected by the filter.
+         */
+        public long getInspected() {
+            return inspected;
+        }
+
+        /**
+         * The number of classes matched by the filter.
+         */
+        public long getMatched() {
+            return matched;
+        }
+
+        /**
+         * The number of classes rejected by the filter.
+         */
+        public long getRejected() {
+            return inspected - matched;
+        }
+
+        /**
+         * The time spent matching.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return name + ' ' + matched + '/' + inspected + " matched in " + duration.toMillis() + "ms";
+        }
+    }
+}
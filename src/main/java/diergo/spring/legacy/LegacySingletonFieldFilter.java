@@ -4,13 +4,19 @@ import static diergo.spring.legacy.MemberPredicates.withBeanType;
 import static diergo.spring.legacy.MemberPredicates.withType;
 import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_SINGLETON;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * A type filter creating bean definitions for fields with a valid bean type.
@@ -36,18 +42,97 @@ class LegacySingletonFieldFilter extends CustomizingTypeFilter<Field> {
                 .findFirst();
     }
 
+    @Override
+    protected Stream<ClassFileMembers.Member> getCandidates(ClassFileMembers members) {
+        return members.getFields().stream();
+    }
+
     @Override
     protected void customizeBeanDefinition(Field access, BeanDefinition bd) {
         bd.setScope(SCOPE_SINGLETON);
         bd.setLazyInit(true);
         AbstractBeanDefinition adb = (AbstractBeanDefinition) bd;
-        adb.setInstanceSupplier(() -> {
-            access.setAccessible(true);
+        adb.setInstanceSupplier(new FieldValueSupplier(adb, () -> access));
+    }
+
+    @Override
+    protected LegacyBeanIndex.Entry describe(String className, Field access) {
+        return new LegacyBeanIndex.Entry(className, access.getName(), SCOPE_SINGLETON, true);
+    }
+
+    /**
+     * Customize the bean definition for a field known by name only, the field is looked up on bean creation.
+     *
+     * @param classLoader the class loader of the bean class or {@code null} to use the default one
+     */
+    static void customizeBeanDefinition(String fieldName, BeanDefinition bd, ClassLoader classLoader) {
+        bd.setScope(SCOPE_SINGLETON);
+        bd.setLazyInit(true);
+        AbstractBeanDefinition adb = (AbstractBeanDefinition) bd;
+        adb.setInstanceSupplier(new FieldValueSupplier(adb, () -> {
+            Field access = ReflectionUtils.findField(getBeanClass(adb, classLoader), fieldName);
+            if (access == null) {
+                throw new BeanCreationException("Cannot find static singleton field " + fieldName
+                        + " of " + adb.getBeanClassName());
+            }
+            return access;
+        }));
+    }
+
+    private static Class<?> getBeanClass(AbstractBeanDefinition adb, ClassLoader classLoader) {
+        try {
+            return adb.hasBeanClass() ? adb.getBeanClass() : ClassUtils.forName(adb.getBeanClassName(), classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new BeanCreationException("Cannot create bean of missing class " + adb.getBeanClassName(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return SCOPE_SINGLETON + " fields";
+    }
+
+    /**
+     * Supplies the value of a static field using a method handle resolved on first access,
+     * so the field lookup and the access checks are done only once.
+     */
+    private static final class FieldValueSupplier implements Supplier<Object> {
+
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class);
+
+        private final AbstractBeanDefinition adb;
+        private final Supplier<Field> access;
+        private volatile MethodHandle getter;
+
+        private FieldValueSupplier(AbstractBeanDefinition adb, Supplier<Field> access) {
+            this.adb = adb;
+            this.access = access;
+        }
+
+        @Override
+        public Object get() {
+            MethodHandle resolved = getter;
+            if (resolved == null) {
+                resolved = resolveGetter();
+                getter = resolved;
+            }
+            try {
+                return (Object) resolved.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new BeanCreationException("Cannot create bean of " + adb.getBeanClassName(), e);
+            }
+        }
+
+        private MethodHandle resolveGetter() {
+            Field field = access.get();
+            field.setAccessible(true);
             try {
-                return access.get(adb.hasBeanClass() ? adb.getBeanClass() : Class.forName(adb.getBeanClassName()));
-            } catch (IllegalAccessException | ClassNotFoundException e) {
-                throw new BeanCreationException("Cannot create bean using static singleton field " + access, e);
+                return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new BeanCreationException("Cannot create bean using static singleton field " + field, e);
             }
-        });
+        }
     }
 }
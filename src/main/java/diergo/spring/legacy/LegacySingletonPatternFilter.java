@@ -0,0 +1,262 @@
+package diergo.spring.legacy;
+
+import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_SINGLETON;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.core.io.Resource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * A type filter detecting classes implementing the singleton pattern from their class files without loading them.
+ * A class is a singleton if all its constructors are private and exactly one static field of its own type is
+ * assigned by the static initializer or by a static method returning its own type.
+ * The bean is provided by the field if it is visible and assigned by the static initializer, by the first visible
+ * static method without parameters returning the own type otherwise.
+ * The bean definitions reference their member by name only, so the classes are loaded when the lazy singletons are
+ * created. Other filters checking the class before this one will load it anyway.
+ * The class files read are cached during a scan only.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder.SingletonBuilder#singletonPattern()
+ */
+class LegacySingletonPatternFilter extends CustomizingTypeFilter<Member> {
+
+    private volatile MetadataReaderFactory fallbackReaderFactory =
+            new SimpleMetadataReaderFactory(CustomizingTypeFilter.class.getClassLoader());
+    private volatile Map<String, Optional<LegacyBeanIndex.Entry>> detected;
+
+    LegacySingletonPatternFilter() {
+        super(MemberPredicates.all());
+    }
+
+    @Override
+    public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+        return detect(metadataReader.getClassMetadata().getClassName(), metadataReader, metadataReaderFactory)
+                .isPresent();
+    }
+
+    /**
+     * The class file is checked by {@link #match(MetadataReader, MetadataReaderFactory)} already.
+     */
+    @Override
+    boolean matchClassFile(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+        return true;
+    }
+
+    @Override
+    public boolean supports(BeanDefinition bd) {
+        return bd instanceof AbstractBeanDefinition && detect(bd.getBeanClassName()).isPresent();
+    }
+
+    @Override
+    public void customize(BeanDefinition bd) {
+        detect(bd.getBeanClassName()).ifPresent(entry -> entry.customize(bd, getClassLoader()));
+    }
+
+    @Override
+    Optional<LegacyBeanIndex.Entry> describe(String className) {
+        return detect(className);
+    }
+
+    @Override
+    void setClassLoader(ClassLoader classLoader) {
+        super.setClassLoader(classLoader);
+        fallbackReaderFactory = new SimpleMetadataReaderFactory(classLoader);
+    }
+
+    @Override
+    void startScan(Map<String, Optional<Class<?>>> typeCache) {
+        super.startScan(typeCache);
+        detected = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    void finishScan() {
+        super.finishScan();
+        detected = null;
+    }
+
+    @Override
+    protected Optional<Member> getAccess(Class<?> type) {
+        return detect(type.getName()).map(entry -> entry.isField()
+                ? ReflectionUtils.findField(type, entry.getMember())
+                : ReflectionUtils.findMethod(type, entry.getMember()));
+    }
+
+    @Override
+    protected Stream<ClassFileMembers.Member> getCandidates(ClassFileMembers members) {
+        return Stream.concat(members.getFields().stream(), members.getMethods().stream());
+    }
+
+    @Override
+    protected void customizeBeanDefinition(Member access, BeanDefinition bd) {
+        if (access instanceof Method) {
+            LegacyBeanMethodFilter.customizeBeanDefinition(SCOPE_SINGLETON, access.getName(), bd);
+        } else {
+            LegacySingletonFieldFilter.customizeBeanDefinition(access.getName(), bd, getClassLoader());
+        }
+    }
+
+    @Override
+    protected LegacyBeanIndex.Entry describe(String className, Member access) {
+        return new LegacyBeanIndex.Entry(className, access.getName(), SCOPE_SINGLETON, !(access instanceof Method));
+    }
+
+    private Optional<LegacyBeanIndex.Entry> detect(String className) {
+        if (className == null) {
+            return Optional.empty();
+        }
+        return detect(className, null, fallbackReaderFactory);
+    }
+
+    private Optional<LegacyBeanIndex.Entry> detect(String className, MetadataReader metadataReader,
+                                                   MetadataReaderFactory metadataReaderFactory) {
+        Map<String, Optional<LegacyBeanIndex.Entry>> cache = detected;
+        if (cache == null) {
+            return read(className, metadataReader, metadataReaderFactory);
+        }
+        return cache.computeIfAbsent(className, name -> read(name, metadataReader, metadataReaderFactory));
+    }
+
+    private static Optional<LegacyBeanIndex.Entry> read(String className, MetadataReader metadataReader,
+                                                        MetadataReaderFactory metadataReaderFactory) {
+        try {
+            Resource resource = metadataReader == null ? null : metadataReader.getResource();
+            if (resource == null) {
+                resource = metadataReaderFactory.getMetadataReader(className).getResource();
+            }
+            try (InputStream in = resource.getInputStream()) {
+                SingletonVisitor visitor = new SingletonVisitor();
+                new ClassReader(in).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                return visitor.toEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return SCOPE_SINGLETON + " pattern";
+    }
+
+    /**
+     * Collects the constructors, the static members of the own type and the static fields assigned by the static
+     * initializer and the static methods of a class file.
+     */
+    private static final class SingletonVisitor extends ClassVisitor {
+
+        private static final int NO_SINGLETON = Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ENUM
+                | Opcodes.ACC_ANNOTATION;
+
+        private final List<ClassFileMembers.Member> fields = new ArrayList<>();
+        private final List<ClassFileMembers.Member> methods = new ArrayList<>();
+        private final Set<String> initialized = new HashSet<>();
+        private final Set<String> assignedLazily = new HashSet<>();
+        private String className;
+        private String internalName;
+        private String descriptor;
+        private boolean candidate;
+        private boolean privateConstructors;
+
+        SingletonVisitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = Type.getObjectType(name).getClassName();
+            internalName = name;
+            descriptor = Type.getObjectType(name).getDescriptor();
+            candidate = (access & NO_SINGLETON) == 0;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if ((access & Opcodes.ACC_STATIC) != 0 && (access & Opcodes.ACC_SYNTHETIC) == 0
+                    && this.descriptor.equals(descriptor)) {
+                fields.add(new ClassFileMembers.Member(access, name, descriptor));
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (!candidate || (access & Opcodes.ACC_SYNTHETIC) != 0) {
+                return null;
+            }
+            if ("<init>".equals(name)) {
+                if ((access & Opcodes.ACC_PRIVATE) == 0) {
+                    candidate = false;
+                }
+                privateConstructors = candidate;
+                return null;
+            }
+            if ("<clinit>".equals(name)) {
+                return new AssignmentVisitor(initialized);
+            }
+            if ((access & Opcodes.ACC_STATIC) != 0 && ("()" + this.descriptor).equals(descriptor)) {
+                methods.add(new ClassFileMembers.Member(access, name, descriptor));
+                return new AssignmentVisitor(assignedLazily);
+            }
+            return null;
+        }
+
+        Optional<LegacyBeanIndex.Entry> toEntry() {
+            if (!candidate || !privateConstructors || fields.size() != 1) {
+                return Optional.empty();
+            }
+            ClassFileMembers.Member field = fields.get(0);
+            if (!field.isPrivate() && initialized.contains(field.getName())) {
+                return Optional.of(new LegacyBeanIndex.Entry(className, field.getName(), SCOPE_SINGLETON, true));
+            }
+            if (!initialized.contains(field.getName()) && !assignedLazily.contains(field.getName())) {
+                return Optional.empty();
+            }
+            return methods.stream()
+                    .filter(method -> !method.isPrivate())
+                    .findFirst()
+                    .map(method -> new LegacyBeanIndex.Entry(className, method.getName(), SCOPE_SINGLETON, false));
+        }
+
+        private final class AssignmentVisitor extends MethodVisitor {
+
+            private final Set<String> assigned;
+
+            private AssignmentVisitor(Set<String> assigned) {
+                super(SpringAsmInfo.ASM_VERSION);
+                this.assigned = assigned;
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                if (opcode == Opcodes.PUTSTATIC && internalName.equals(owner)
+                        && SingletonVisitor.this.descriptor.equals(descriptor)) {
+                    assigned.add(name);
+                }
+            }
+        }
+    }
+}
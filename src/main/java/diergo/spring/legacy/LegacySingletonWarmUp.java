@@ -0,0 +1,216 @@
+package diergo.spring.legacy;
+
+import static java.util.stream.Collectors.toCollection;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates the lazy legacy singletons registered by a post processor after the context has been refreshed,
+ * so the first usage does not pay for their static initialization.
+ * The warm up runs in the background, the refresh does not wait for it. A bounded number of threads initializes the
+ * classes of the beans in parallel. The beans are created one after the other afterwards, dependencies declared by
+ * depends on first, as the bean factory serializes the creation of singletons anyway.
+ * Beans not started to be warmed up until the deadline or the context being closed are left to be created lazily.
+ * Legacy classes depending on each other in their static initialization may block each other when initialized in
+ * parallel, the threads are daemons so they do not block the shutdown in this case.
+ *
+ * @see LegacyBeanRegistryPostProcessorBuilder#warmUp(int, Duration)
+ */
+class LegacySingletonWarmUp implements ApplicationListener<ContextRefreshedEvent>, BeanFactoryAware, DisposableBean {
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final List<String> beanNames;
+    private final int threads;
+    private final Duration deadline;
+    private ConfigurableListableBeanFactory beanFactory;
+    private volatile boolean destroyed;
+    private volatile CompletableFuture<Integer> warmedUp;
+
+    LegacySingletonWarmUp(List<String> beanNames, int threads, Duration deadline) {
+        this.beanNames = new ArrayList<>(beanNames);
+        this.threads = threads;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext().getAutowireCapableBeanFactory() == beanFactory) {
+            warmedUp = warmUp();
+        }
+    }
+
+    /**
+     * Stop to warm up beans not started yet.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+    }
+
+    /**
+     * The warm up started by the last refresh.
+     *
+     * @return the future number of beans warmed up or {@code null} if not started
+     */
+    CompletableFuture<Integer> getWarmedUp() {
+        return warmedUp;
+    }
+
+    /**
+     * Start to create all lazy singletons not created yet in the background until the deadline.
+     *
+     * @return the future number of beans warmed up
+     */
+    CompletableFuture<Integer> warmUp() {
+        long started = System.nanoTime();
+        long end = started + deadline.toNanos();
+        List<String> candidates = getCandidates();
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, candidates.size()),
+                new WarmUpThreadFactory());
+        Set<String> initialized = ConcurrentHashMap.newKeySet();
+        CompletableFuture<?>[] classes = candidates.stream()
+                .map(name -> CompletableFuture.runAsync(() -> {
+                    if (!destroyed && System.nanoTime() - end < 0 && initializeClass(name)) {
+                        initialized.add(name);
+                    }
+                }, executor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(classes).thenApplyAsync(done -> {
+            int warmedUp = 0;
+            int leftLazy = 0;
+            for (String name : candidates) {
+                if (destroyed || System.nanoTime() - end >= 0) {
+                    ++leftLazy;
+                } else if (initialized.contains(name) && create(name)) {
+                    ++warmedUp;
+                }
+            }
+            if (leftLazy > 0) {
+                logger.warn("Deadline of " + deadline.toMillis() + "ms exceeded, " + leftLazy
+                        + " legacy singletons are left lazy");
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("Warmed up " + warmedUp + " of " + candidates.size() + " legacy singletons in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms");
+            }
+            return warmedUp;
+        }, executor).whenComplete((warmedUp, e) -> executor.shutdown());
+    }
+
+    /**
+     * Get the lazy singletons not created yet, each after the beans it depends on.
+     */
+    List<String> getCandidates() {
+        Set<String> candidates = beanNames.stream()
+                .filter(this::isLazySingleton)
+                .collect(toCollection(LinkedHashSet::new));
+        Set<String> ordered = new LinkedHashSet<>();
+        candidates.forEach(name -> addOrdered(name, candidates, ordered, new HashSet<>()));
+        return new ArrayList<>(ordered);
+    }
+
+    private void addOrdered(String name, Set<String> candidates, Set<String> ordered, Set<String> visiting) {
+        if (ordered.contains(name) || !visiting.add(name)) {
+            return;
+        }
+        String[] dependsOn = beanFactory.getMergedBeanDefinition(name).getDependsOn();
+        Stream.concat(dependsOn == null ? Stream.empty() : Stream.of(dependsOn),
+                Stream.of(beanFactory.getDependenciesForBean(name)))
+                .map(BeanFactoryUtils::transformedBeanName)
+                .filter(candidates::contains)
+                .forEach(dependency -> addOrdered(dependency, candidates, ordered, visiting));
+        ordered.add(name);
+    }
+
+    /**
+     * Create the bean, its class has been initialized already.
+     *
+     * @return whether the bean has been created
+     */
+    private boolean create(String name) {
+        long start = System.nanoTime();
+        try {
+            beanFactory.getBean(name);
+        } catch (BeansException e) {
+            logger.warn("Cannot warm up legacy singleton " + name, e);
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Warmed up legacy singleton " + name + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+        return true;
+    }
+
+    private boolean isLazySingleton(String name) {
+        if (!beanFactory.containsBeanDefinition(name) || beanFactory.containsSingleton(name)) {
+            return false;
+        }
+        BeanDefinition bd = beanFactory.getMergedBeanDefinition(name);
+        return bd.isSingleton() && bd.isLazyInit() && !bd.isAbstract();
+    }
+
+    private boolean initializeClass(String name) {
+        String className = beanFactory.getMergedBeanDefinition(name).getBeanClassName();
+        if (className == null) {
+            return true;
+        }
+        ClassLoader classLoader = beanFactory.getBeanClassLoader();
+        try {
+            Class.forName(className, true, classLoader == null ? ClassUtils.getDefaultClassLoader() : classLoader);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.warn("Cannot initialize class of legacy singleton " + name, e);
+            return false;
+        }
+    }
+
+    private static final class WarmUpThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+        private final int pool = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "legacy-warm-up-" + pool + '-' + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,66 +1,449 @@
 package diergo.spring.legacy;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import org.springframework.aop.TargetSource;
 import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.NamedBeanHolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationContextException;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
 
 /**
  * Support access to Spring beans from outside an application context.
  * Import this configuration from one of your configuration classes before using it.
+ * If several contexts import it, legacy code is routed to the context loaded by its thread context class loader
+ * or one of its parents, the context registered first is used otherwise.
+ * A context can be chosen explicitly by its id, too.
+ * After all singletons have been instantiated, the bean names are resolved by type once, so later lookups do not
+ * match all bean definitions again.
  *
  * @see org.springframework.context.annotation.Import
  * @since 1.0
  */
 @Configuration
-public class LegacySpringAccess implements BeanFactoryAware, DisposableBean {
+public class LegacySpringAccess implements BeanFactoryAware, ApplicationContextAware, SmartInitializingSingleton,
+        DisposableBean {
 
-    private static final AtomicReference<BeanFactory> BEAN_FACTORY_HOLDER = new AtomicReference<>();
+    private static final AtomicReference<Routing> ROUTING = new AtomicReference<>(Routing.EMPTY);
+    private static final Map<Class<?>, DelegatingTargetSource<?>> PROXIES = new ConcurrentHashMap<>();
+    private static final AtomicReference<CompletableFuture<Void>> STARTED =
+            new AtomicReference<>(new CompletableFuture<>());
+
+    private static volatile LegacySpringAccessListener listener;
+
+    private BeanAccess registered;
 
     /**
      * Get unique bean from Spring factory.
      * This is a way to access Spring beans from legacy code where you cannot use DI.
      * Calling before context started will return a proxy delegating to the context if available.
      * Do not use such proxies from constructor code!
+     * There is one proxy per type, it always delegates to the bean of the context of the calling thread.
+     * The proxies of the types loaded by a class loader are dropped when the last context of it is removed.
+     * Singletons are cached by type until the bean factory is removed, other beans are resolved on each call.
+     * With more than one context the bean is got from the context of the calling thread.
      */
-    @SuppressWarnings("unchecked")
     public static <T> T getSpringBean(Class<T> type) {
-        BeanFactory context = BEAN_FACTORY_HOLDER.get();
-        if (context == null) {
-            return (T) ProxyFactory.getProxy(new DelegatingTargetSource<>(type));
+        LegacySpringAccessListener current = listener;
+        BeanAccess access = ROUTING.get().route();
+        if (current == null) {
+            return access == null ? getProxy(type, null) : access.getBean(type);
+        }
+        long start = System.nanoTime();
+        T bean = access == null ? getProxy(type, current) : access.getBean(type);
+        current.beanGot(type, access == null, System.nanoTime() - start);
+        return bean;
+    }
+
+    /**
+     * Get unique bean from Spring factory as soon as a context has been started.
+     * This is a way for legacy background threads started early to wait for a bean without polling.
+     * If a context is available already, the future is completed by the calling thread.
+     * Otherwise the bean is resolved asynchronously once a bean factory has been injected, using the context of the
+     * calling thread as {@link #getSpringBean(Class)} does.
+     *
+     * @return a future completed by the bean or by the exception of resolving it
+     * @since 1.1
+     */
+    public static <T> CompletableFuture<T> getSpringBeanAsync(Class<T> type) {
+        CompletableFuture<Void> started = STARTED.get();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (ROUTING.get().route(classLoader) == null) {
+            return started.thenApplyAsync(ignored -> getBean(type, classLoader));
+        }
+        CompletableFuture<T> bean = new CompletableFuture<>();
+        try {
+            bean.complete(getBean(type, classLoader));
+        } catch (RuntimeException e) {
+            bean.completeExceptionally(e);
         }
-        return context.getBean(type);
+        return bean;
+    }
+
+    /**
+     * Get unique bean from Spring factory waiting for a context to be started.
+     * The calling thread is parked until a bean factory has been injected or the timeout elapsed.
+     *
+     * @throws ApplicationContextException if no context has been started in time or the thread has been interrupted
+     * @see #getSpringBeanAsync(Class)
+     * @since 1.1
+     */
+    public static <T> T getSpringBean(Class<T> type, Duration timeout) {
+        try {
+            return getSpringBeanAsync(type).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ApplicationContextException("Spring application context not started within "
+                    + timeout.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationContextException("Interrupted waiting for Spring application context", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ApplicationContextException("Cannot get Spring bean " + type.getName(), e.getCause());
+        }
+    }
+
+    /**
+     * Get unique bean from the Spring factory of the context with the id passed.
+     * This is a way to access Spring beans of a specific context from legacy code where you cannot use DI.
+     *
+     * @throws ApplicationContextException if no such context has been started
+     * @see ApplicationContext#getId()
+     * @since 1.1
+     */
+    public static <T> T getSpringBean(String contextId, Class<T> type) {
+        BeanAccess access = ROUTING.get().byKey.get(contextId);
+        if (access == null) {
+            throw new ApplicationContextException("Spring application context " + contextId + " not started");
+        }
+        LegacySpringAccessListener current = listener;
+        if (current == null) {
+            return access.getBean(type);
+        }
+        long start = System.nanoTime();
+        T bean = access.getBean(type);
+        current.beanGot(type, false, System.nanoTime() - start);
+        return bean;
+    }
+
+    /**
+     * Notify the listener about all bean accesses of legacy code from now on.
+     *
+     * @param listener the listener or {@code null} to remove the current one
+     * @see LegacySpringAccessMetrics
+     * @since 1.1
+     */
+    public static void setListener(LegacySpringAccessListener listener) {
+        LegacySpringAccess.listener = listener;
     }
 
     /**
      * Inject the bean factory to be used for legacy bean resolving.
+     * It is used for calls from threads having its bean class loader or a child of it as context class loader.
      * @see #getSpringBean(Class)
      */
     @Override
     public void setBeanFactory(BeanFactory beanFactory) {
-        BEAN_FACTORY_HOLDER.compareAndSet(null, beanFactory);
+        ClassLoader classLoader = beanFactory instanceof ConfigurableBeanFactory
+                ? ((ConfigurableBeanFactory) beanFactory).getBeanClassLoader() : null;
+        register(new BeanAccess(beanFactory, classLoader == null ? ClassUtils.getDefaultClassLoader() : classLoader,
+                null));
+    }
+
+    /**
+     * Make the bean factory accessible by the id of the context, too.
+     * @see #getSpringBean(String, Class)
+     */
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        if (registered != null && applicationContext.getId() != null) {
+            register(registered.withKey(applicationContext.getId()));
+        }
+    }
+
+    /**
+     * Resolve the bean names of all types proxied before the context has been started.
+     * The names of other types are resolved on first access.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (registered != null) {
+            registered.resolveNames(PROXIES.keySet());
+        }
     }
 
     /**
-     * Remove the bean factory used for legacy bean resolving.
+     * Remove the bean factory used for legacy bean resolving together with all cached singletons.
+     * If it has been the last one of its class loader, the proxies of the types loaded by it are dropped, too,
+     * so the class loader can be collected.
      * @see #getSpringBean(Class)
      */
     @Override
     public void destroy() {
-        BEAN_FACTORY_HOLDER.set(null);
+        BeanAccess removed = registered;
+        registered = null;
+        if (removed == null) {
+            return;
+        }
+        Routing routing = ROUTING.updateAndGet(current -> current.without(removed));
+        if (routing == Routing.EMPTY) {
+            STARTED.updateAndGet(started -> started.isDone() ? new CompletableFuture<>() : started);
+        }
+        PROXIES.values().forEach(proxy -> proxy.release(removed.beanFactory));
+        if (!routing.byClassLoader.containsKey(removed.classLoader)) {
+            PROXIES.keySet().removeIf(type -> isLoadedBy(type, removed.classLoader));
+            LegacySpringAccessListener current = listener;
+            if (current != null) {
+                current.classLoaderReleased(removed.classLoader);
+            }
+        }
+    }
+
+    /**
+     * Remove all bean factories registered, all proxies and the listener.
+     */
+    static void reset() {
+        listener = null;
+        ROUTING.set(Routing.EMPTY);
+        PROXIES.clear();
+        STARTED.updateAndGet(started -> started.isDone() ? new CompletableFuture<>() : started);
+    }
+
+    /**
+     * Check whether the type has been loaded by the class loader or one of its children.
+     */
+    static boolean isLoadedBy(Class<?> type, ClassLoader classLoader) {
+        for (ClassLoader current = type.getClassLoader(); current != null; current = current.getParent()) {
+            if (current == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void register(BeanAccess access) {
+        BeanAccess replaced = registered;
+        registered = access;
+        ROUTING.updateAndGet(routing -> routing.without(replaced).with(access));
+        STARTED.get().complete(null);
+    }
+
+    private static <T> T getProxy(Class<T> type, LegacySpringAccessListener current) {
+        return type.cast(PROXIES.computeIfAbsent(type, proxied -> {
+            if (current != null) {
+                current.proxyCreated(proxied);
+            }
+            return new DelegatingTargetSource<>(proxied);
+        }).proxy);
+    }
+
+    private static <T> T getBean(Class<T> type, ClassLoader classLoader) {
+        BeanAccess access = ROUTING.get().route(classLoader);
+        if (access == null) {
+            throw new ApplicationContextException("Spring application context not started");
+        }
+        return access.getBean(type);
+    }
+
+    /**
+     * An immutable snapshot of all bean factories registered, replaced as a whole on each change.
+     * With a single bean factory it is used without any lookup.
+     */
+    private static final class Routing {
+
+        static final Routing EMPTY = new Routing(Collections.emptyList());
+
+        private final List<BeanAccess> accesses;
+        private final BeanAccess single;
+        private final Map<ClassLoader, BeanAccess> byClassLoader = new HashMap<>();
+        private final Map<String, BeanAccess> byKey = new HashMap<>();
+
+        private Routing(List<BeanAccess> accesses) {
+            this.accesses = accesses;
+            this.single = accesses.size() == 1 ? accesses.get(0) : null;
+            for (BeanAccess access : accesses) {
+                byClassLoader.putIfAbsent(access.classLoader, access);
+                if (access.key != null) {
+                    byKey.putIfAbsent(access.key, access);
+                }
+            }
+        }
+
+        /**
+         * Find the bean factory for the current thread.
+         *
+         * @return the bean factory or {@code null} if none has been registered
+         */
+        BeanAccess route() {
+            if (single != null || accesses.isEmpty()) {
+                return single;
+            }
+            return route(Thread.currentThread().getContextClassLoader());
+        }
+
+        /**
+         * Find the bean factory for a thread with the context class loader passed.
+         *
+         * @return the bean factory or {@code null} if none has been registered
+         */
+        BeanAccess route(ClassLoader contextClassLoader) {
+            if (single != null || accesses.isEmpty()) {
+                return single;
+            }
+            for (ClassLoader classLoader = contextClassLoader; classLoader != null;
+                 classLoader = classLoader.getParent()) {
+                BeanAccess access = byClassLoader.get(classLoader);
+                if (access != null) {
+                    return access;
+                }
+            }
+            return accesses.get(0);
+        }
+
+        Routing with(BeanAccess access) {
+            List<BeanAccess> changed = new ArrayList<>(accesses);
+            changed.add(access);
+            return new Routing(changed);
+        }
+
+        Routing without(BeanAccess access) {
+            if (access == null || !accesses.contains(access)) {
+                return this;
+            }
+            List<BeanAccess> changed = new ArrayList<>(accesses);
+            changed.remove(access);
+            return changed.isEmpty() ? EMPTY : new Routing(changed);
+        }
+    }
+
+    /**
+     * The bean factory together with the singletons and bean names resolved from it, so all are replaced at once.
+     * Bean names are kept by type only after the configuration of the bean factory has been frozen, so no more bean
+     * definitions are expected to change the names.
+     */
+    private static final class BeanAccess {
+
+        private final BeanFactory beanFactory;
+        private final ClassLoader classLoader;
+        private final String key;
+        private final Map<Class<?>, Object> singletons;
+        private final Map<Class<?>, String> names;
+
+        private BeanAccess(BeanFactory beanFactory, ClassLoader classLoader, String key) {
+            this(beanFactory, classLoader, key, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        private BeanAccess(BeanFactory beanFactory, ClassLoader classLoader, String key,
+                           Map<Class<?>, Object> singletons, Map<Class<?>, String> names) {
+            this.beanFactory = beanFactory;
+            this.classLoader = classLoader;
+            this.key = key;
+            this.singletons = singletons;
+            this.names = names;
+        }
+
+        BeanAccess withKey(String key) {
+            return new BeanAccess(beanFactory, classLoader, key, singletons, names);
+        }
+
+        <T> T getBean(Class<T> type) {
+            Object singleton = singletons.get(type);
+            if (singleton != null) {
+                return type.cast(singleton);
+            }
+            String name = names.get(type);
+            T bean;
+            if (name != null) {
+                bean = beanFactory.getBean(name, type);
+            } else if (beanFactory instanceof AutowireCapableBeanFactory) {
+                NamedBeanHolder<T> holder = ((AutowireCapableBeanFactory) beanFactory).resolveNamedBean(type);
+                name = holder.getBeanName();
+                bean = holder.getBeanInstance();
+                if (isFrozen()) {
+                    names.putIfAbsent(type, name);
+                }
+            } else {
+                return beanFactory.getBean(type);
+            }
+            if (beanFactory.isSingleton(name)) {
+                singletons.putIfAbsent(type, bean);
+            }
+            return bean;
+        }
+
+        /**
+         * Keep the names of the types having a single bean without creating any bean.
+         * Types with several beans are resolved on first access, taking primary beans into account.
+         */
+        void resolveNames(Iterable<Class<?>> types) {
+            if (!(beanFactory instanceof ListableBeanFactory) || !isFrozen()) {
+                return;
+            }
+            for (Class<?> type : types) {
+                String[] candidates = ((ListableBeanFactory) beanFactory).getBeanNamesForType(type, true, false);
+                if (candidates.length == 1) {
+                    names.putIfAbsent(type, candidates[0]);
+                }
+            }
+        }
+
+        private boolean isFrozen() {
+            return beanFactory instanceof ConfigurableListableBeanFactory
+                    && ((ConfigurableListableBeanFactory) beanFactory).isConfigurationFrozen();
+        }
+
+        boolean isCached(Class<?> type) {
+            return singletons.containsKey(type);
+        }
     }
 
+    /**
+     * Resolves the target from the current bean factory of the calling thread.
+     * A singleton target is kept together with the bean access it has been resolved from, so it is used
+     * without any lookup until the bean factory changes or is removed.
+     */
     private static class DelegatingTargetSource<T> implements TargetSource {
 
         private final Class<T> type;
-        private T target;
+        private final Object proxy;
+        private volatile ResolvedTarget<T> resolved;
 
         private DelegatingTargetSource(Class<T> type) {
             this.type = type;
+            this.proxy = ProxyFactory.getProxy(this);
+        }
+
+        /**
+         * Drop the target resolved from the bean factory removed.
+         */
+        void release(BeanFactory beanFactory) {
+            ResolvedTarget<T> current = resolved;
+            if (current != null && current.access.beanFactory == beanFactory) {
+                resolved = null;
+            }
         }
 
         @Override
@@ -75,8 +458,28 @@ public class LegacySpringAccess implements BeanFactoryAware, DisposableBean {
 
         @Override
         public T getTarget() {
-            if (target == null) {
-                target = getFromContext();
+            LegacySpringAccessListener current = listener;
+            if (current == null) {
+                return resolveTarget();
+            }
+            long start = System.nanoTime();
+            T target = resolveTarget();
+            current.targetResolved(type, System.nanoTime() - start);
+            return target;
+        }
+
+        private T resolveTarget() {
+            BeanAccess access = ROUTING.get().route();
+            if (access == null) {
+                throw new ApplicationContextException("Spring application context not started");
+            }
+            ResolvedTarget<T> current = resolved;
+            if (current != null && current.access == access) {
+                return current.target;
+            }
+            T target = access.getBean(type);
+            if (access.isCached(type)) {
+                resolved = new ResolvedTarget<>(access, target);
             }
             return target;
         }
@@ -85,14 +488,16 @@ public class LegacySpringAccess implements BeanFactoryAware, DisposableBean {
         public void releaseTarget(Object target) {
 
         }
+    }
 
-        private T getFromContext() {
-            return BEAN_FACTORY_HOLDER.updateAndGet(old -> {
-                if (old != null) {
-                    return old;
-                }
-                throw new ApplicationContextException("Spring application context not started");
-            }).getBean(type);
+    private static final class ResolvedTarget<T> {
+
+        private final BeanAccess access;
+        private final T target;
+
+        private ResolvedTarget(BeanAccess access, T target) {
+            this.access = access;
+            this.target = target;
         }
     }
 }
@@ -0,0 +1,45 @@
+package diergo.spring.legacy;
+
+/**
+ * Gets notified about accesses of legacy code to Spring beans.
+ * The listener is called by the accessing threads, so it has to be thread safe, fast and must not throw.
+ * Without a listener set, no timings are taken at all.
+ *
+ * @see LegacySpringAccess#setListener(LegacySpringAccessListener)
+ * @see LegacySpringAccessMetrics
+ * @since 1.1
+ */
+public interface LegacySpringAccessListener {
+
+    /**
+     * A bean has been got from legacy code.
+     *
+     * @param type the type requested
+     * @param proxied whether a proxy has been returned because no context is started yet
+     * @param nanos the time spent to get the bean or proxy
+     */
+    default void beanGot(Class<?> type, boolean proxied, long nanos) {
+    }
+
+    /**
+     * A proxy has been created for a type requested before a context has been started.
+     */
+    default void proxyCreated(Class<?> type) {
+    }
+
+    /**
+     * A proxy got before a context has been started resolved its target on a call.
+     *
+     * @param type the type of the proxy
+     * @param nanos the time spent to resolve the target
+     */
+    default void targetResolved(Class<?> type, long nanos) {
+    }
+
+    /**
+     * The last context of a class loader has been removed, so the types loaded by it or its children are not
+     * accessed anymore and should not be kept.
+     */
+    default void classLoaderReleased(ClassLoader classLoader) {
+    }
+}
@@ -0,0 +1,204 @@
+package diergo.spring.legacy;
+
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the accesses of legacy code to Spring beans by type, together with latency histograms of getting beans and
+ * resolving proxy targets.
+ * All counters are striped, so recording does not lock or contend between threads.
+ * The metrics of the types of a class loader are dropped when the last context of it is removed.
+ *
+ * @see LegacySpringAccess#setListener(LegacySpringAccessListener)
+ * @since 1.1
+ */
+public final class LegacySpringAccessMetrics implements LegacySpringAccessListener {
+
+    private final Map<Class<?>, TypeMetrics> types = new ConcurrentHashMap<>();
+
+    @Override
+    public void beanGot(Class<?> type, boolean proxied, long nanos) {
+        TypeMetrics metrics = getMetrics(type);
+        metrics.beanAccess.record(nanos);
+        if (proxied) {
+            metrics.proxiedAccess.increment();
+        }
+    }
+
+    @Override
+    public void proxyCreated(Class<?> type) {
+        getMetrics(type).proxyCreations.increment();
+    }
+
+    @Override
+    public void targetResolved(Class<?> type, long nanos) {
+        getMetrics(type).targetResolution.record(nanos);
+    }
+
+    @Override
+    public void classLoaderReleased(ClassLoader classLoader) {
+        types.keySet().removeIf(type -> LegacySpringAccess.isLoadedBy(type, classLoader));
+    }
+
+    /**
+     * Get the metrics of all types accessed.
+     */
+    public Map<Class<?>, TypeMetrics> getTypes() {
+        return Collections.unmodifiableMap(types);
+    }
+
+    /**
+     * Get the metrics of the types accessed most often, including calls of proxies.
+     *
+     * @param limit the maximal number of types
+     */
+    public List<TypeMetrics> getHottest(int limit) {
+        return types.values().stream()
+                .sorted(comparingLong(TypeMetrics::getAccesses).reversed())
+                .limit(limit)
+                .collect(toList());
+    }
+
+    private TypeMetrics getMetrics(Class<?> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? types.computeIfAbsent(type, TypeMetrics::new) : metrics;
+    }
+
+    /**
+     * The metrics of a single type.
+     */
+    public static final class TypeMetrics {
+
+        private final Class<?> type;
+        private final Histogram beanAccess = new Histogram();
+        private final LongAdder proxiedAccess = new LongAdder();
+        private final LongAdder proxyCreations = new LongAdder();
+        private final Histogram targetResolution = new Histogram();
+
+        private TypeMetrics(Class<?> type) {
+            this.type = type;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * Get the latencies of getting beans of the type, including the proxies returned.
+         */
+        public Histogram getBeanAccess() {
+            return beanAccess;
+        }
+
+        /**
+         * Get the number of proxies returned because no context was started.
+         */
+        public long getProxiedAccess() {
+            return proxiedAccess.sum();
+        }
+
+        /**
+         * Get the number of proxies created.
+         */
+        public long getProxyCreations() {
+            return proxyCreations.sum();
+        }
+
+        /**
+         * Get the latencies of proxy target resolutions, done on each call of a proxy.
+         */
+        public Histogram getTargetResolution() {
+            return targetResolution;
+        }
+
+        /**
+         * Get the number of beans got and proxy calls.
+         */
+        public long getAccesses() {
+            return beanAccess.getCount() + targetResolution.getCount();
+        }
+
+        @Override
+        public String toString() {
+            return type.getName() + ": beans " + beanAccess + ", proxied " + getProxiedAccess()
+                    + ", proxies " + getProxyCreations() + ", targets " + targetResolution;
+        }
+    }
+
+    /**
+     * A latency histogram with buckets of powers of two nanoseconds.
+     * The bucket {@code i} counts the latencies up to {@code 2^i - 1} nanoseconds not counted by smaller buckets.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 64;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder total = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < BUCKETS; ++i) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+            total.add(value);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public Duration getTotal() {
+            return Duration.ofNanos(total.sum());
+        }
+
+        public Duration getMean() {
+            long count = getCount();
+            return count == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / count);
+        }
+
+        /**
+         * Get the upper bound of the bucket containing the percentile.
+         *
+         * @param percentile the percentile between {@code 0} and {@code 100}
+         */
+        public Duration getPercentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Duration.ofNanos((1L << i) - 1);
+                }
+            }
+            return Duration.ZERO;
+        }
+
+        @Override
+        public String toString() {
+            return getCount() + " in " + getTotal().toNanos() + "ns (mean " + getMean().toNanos() + "ns, p99 <= "
+                    + getPercentile(99).toNanos() + "ns)";
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package diergo.spring.legacy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A predicate on members built from names, patterns, modifiers and types instead of an opaque lambda.
+ * The parts are compiled to fast matchers: names to hash sets and patterns to literal prefix checks or hand written
+ * matchers for the patterns of {@link MemberPredicates}.
+ * Besides loaded members, it can be evaluated on members read from class files. As types cannot be checked without
+ * loading them, the evaluation tells whether a member may match and whether it must match.
+ * The {@link #toString() description} identifies the predicate to detect changed rules, it is {@code null} if any part
+ * is an opaque predicate. It is compared for equality only and never parsed back to a predicate.
+ * Combining predicates by {@link #and(Predicate)}, {@link #or(Predicate)} and {@link #negate()} keeps the structure.
+ *
+ * @see MemberPredicates
+ */
+abstract class MemberPredicate<T extends Member> implements Predicate<T> {
+
+    static final String GETTERS = "get[A-Z].+";
+    static final String CONSTANTS = "[A-Z][A-Z0-9_]+";
+
+    private static final String REGEX_SPECIALS = "\\^$.|?*+()[]{}";
+    private static final String QUANTIFIERS = "?*{";
+
+    @Override
+    public boolean test(T member) {
+        return matches(member);
+    }
+
+    /**
+     * Check whether the member read from a class file may match, because the parts not decidable on class files are
+     * assumed to match.
+     */
+    abstract boolean mayMatch(ClassFileMembers.Member member);
+
+    /**
+     * Check whether the member read from a class file matches for sure, because the parts not decidable on class files
+     * are assumed not to match.
+     */
+    abstract boolean mustMatch(ClassFileMembers.Member member);
+
+    /**
+     * Get the description of the predicate.
+     *
+     * @return the description or {@code null} if the predicate contains opaque parts
+     */
+    abstract String getDescription();
+
+    abstract boolean matches(Member member);
+
+    @Override
+    public Predicate<T> and(Predicate<? super T> other) {
+        return new Junction<>(true, this, of(other));
+    }
+
+    @Override
+    public Predicate<T> or(Predicate<? super T> other) {
+        return new Junction<>(false, this, of(other));
+    }
+
+    @Override
+    public Predicate<T> negate() {
+        return new Not<>(this);
+    }
+
+    @Override
+    public String toString() {
+        String description = getDescription();
+        return description == null ? "opaque" : description;
+    }
+
+    /**
+     * Get a member predicate of any predicate, wrapping it as opaque part if needed.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Member> MemberPredicate<T> of(Predicate<? super T> predicate) {
+        if (predicate instanceof MemberPredicate) {
+            return (MemberPredicate<T>) predicate;
+        }
+        return new Opaque<>(predicate);
+    }
+
+    static <T extends Member> MemberPredicate<T> all() {
+        return new All<>();
+    }
+
+    static <T extends Member> MemberPredicate<T> modifiers(int required, int excluded) {
+        return new Modifiers<>(required, excluded);
+    }
+
+    static <T extends Member> MemberPredicate<T> named(String... names) {
+        return new Names<>(names);
+    }
+
+    static <T extends Member> MemberPredicate<T> named(Pattern pattern) {
+        return new NamePattern<>(pattern);
+    }
+
+    static <T extends Member> MemberPredicate<T> ofType(Class<?> type) {
+        return new OfType<>(type);
+    }
+
+    static <T extends Member> MemberPredicate<T> ofBeanType() {
+        return new OfBeanType<>();
+    }
+
+    static <T extends Member> MemberPredicate<T> withoutParameters() {
+        return new WithoutParameters<>();
+    }
+
+    static <T extends Member> MemberPredicate<T> noObjectMethod() {
+        return new NoObjectMethod<>();
+    }
+
+    /**
+     * Compile a name pattern to a matcher checking the cheap parts first.
+     */
+    static Predicate<String> compile(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() == 0 && GETTERS.equals(regex)) {
+            return MemberPredicate::isGetterName;
+        }
+        if (pattern.flags() == 0 && CONSTANTS.equals(regex)) {
+            return MemberPredicate::isConstantName;
+        }
+        String prefix = pattern.flags() == 0 && regex.indexOf('|') < 0 ? getLiteralPrefix(regex) : "";
+        if (prefix.isEmpty()) {
+            return name -> pattern.matcher(name).matches();
+        }
+        return name -> name.startsWith(prefix) && pattern.matcher(name).matches();
+    }
+
+    private static String getLiteralPrefix(String regex) {
+        int end = 0;
+        while (end < regex.length() && REGEX_SPECIALS.indexOf(regex.charAt(end)) < 0) {
+            ++end;
+        }
+        if (end > 0 && end < regex.length() && QUANTIFIERS.indexOf(regex.charAt(end)) >= 0) {
+            --end;
+        }
+        return regex.substring(0, end);
+    }
+
+    private static boolean isGetterName(String name) {
+        return name.length() > 4 && name.startsWith("get") && isUpperCase(name.charAt(3));
+    }
+
+    private static boolean isConstantName(String name) {
+        if (name.length() < 2 || !isUpperCase(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (!isUpperCase(c) && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUpperCase(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static Class<?> getType(Member member) {
+        if (member instanceof Field) {
+            return ((Field) member).getType();
+        }
+        if (member instanceof Method) {
+            return ((Method) member).getReturnType();
+        }
+        return null;
+    }
+
+    /**
+     * A predicate which can be decided on class files, too.
+     */
+    private abstract static class Decidable<T extends Member> extends MemberPredicate<T> {
+
+        @Override
+        boolean mayMatch(ClassFileMembers.Member member) {
+            return matches(member);
+        }
+
+        @Override
+        boolean mustMatch(ClassFileMembers.Member member) {
+            return matches(member);
+        }
+
+        abstract boolean matches(ClassFileMembers.Member member);
+    }
+
+    private static final class All<T extends Member> extends Decidable<T> {
+
+        @Override
+        boolean matches(Member member) {
+            return true;
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return true;
+        }
+
+        @Override
+        String getDescription() {
+            return "all";
+        }
+    }
+
+    private static final class Modifiers<T extends Member> extends Decidable<T> {
+
+        private final int required;
+        private final int excluded;
+
+        private Modifiers(int required, int excluded) {
+            this.required = required;
+            this.excluded = excluded;
+        }
+
+        @Override
+        boolean matches(Member member) {
+            return matches(member.getModifiers());
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return matches(member.getAccess());
+        }
+
+        private boolean matches(int modifiers) {
+            return (modifiers & required) == required && (modifiers & excluded) == 0;
+        }
+
+        @Override
+        String getDescription() {
+            List<String> parts = new ArrayList<>();
+            if (required != 0) {
+                parts.add(Modifier.toString(required).replace(' ', '&'));
+            }
+            for (String modifier : Modifier.toString(excluded).split(" ")) {
+                if (!modifier.isEmpty()) {
+                    parts.add('!' + modifier);
+                }
+            }
+            return String.join("&", parts);
+        }
+    }
+
+    private static final class Names<T extends Member> extends Decidable<T> {
+
+        private final Set<String> names;
+        private final String single;
+
+        private Names(String... names) {
+            this.names = new HashSet<>(Arrays.asList(names));
+            this.single = names.length == 1 ? names[0] : null;
+        }
+
+        @Override
+        boolean matches(Member member) {
+            return matches(member.getName());
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return matches(member.getName());
+        }
+
+        private boolean matches(String name) {
+            return single == null ? names.contains(name) : single.equals(name);
+        }
+
+        @Override
+        String getDescription() {
+            return "named(" + String.join(",", new TreeSet<>(names)) + ')';
+        }
+    }
+
+    private static final class NamePattern<T extends Member> extends Decidable<T> {
+
+        private final Pattern pattern;
+        private final Predicate<String> matcher;
+
+        private NamePattern(Pattern pattern) {
+            this.pattern = pattern;
+            this.matcher = compile(pattern);
+        }
+
+        @Override
+        boolean matches(Member member) {
+            return matcher.test(member.getName());
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return matcher.test(member.getName());
+        }
+
+        @Override
+        String getDescription() {
+            return "matching(/" + pattern.pattern() + "/" + (pattern.flags() == 0 ? "" : pattern.flags()) + ')';
+        }
+    }
+
+    /**
+     * Checks the field type or method return type to be assignable to the type.
+     * On class files only members of the type itself must match, members of other class types may match.
+     * Primitives and arrays may match only if they can be assigned to the type at all.
+     */
+    private static final class OfType<T extends Member> extends MemberPredicate<T> {
+
+        private final Class<?> type;
+
+        private OfType(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        boolean matches(Member member) {
+            Class<?> memberType = getType(member);
+            return memberType != null && type.isAssignableFrom(memberType);
+        }
+
+        @Override
+        boolean mayMatch(ClassFileMembers.Member member) {
+            return member.getTypeName() != null || type == Object.class || type.isInterface() || type.isPrimitive()
+                    || type.isArray();
+        }
+
+        @Override
+        boolean mustMatch(ClassFileMembers.Member member) {
+            return type.getName().equals(member.getTypeName());
+        }
+
+        @Override
+        String getDescription() {
+            return "type(" + type.getName() + ')';
+        }
+    }
+
+    private static final class OfBeanType<T extends Member> extends Decidable<T> {
+
+        @Override
+        boolean matches(Member member) {
+            Class<?> type = getType(member);
+            return type != null && type != Void.class && !type.isPrimitive() && !type.isArray();
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            String typeName = member.getTypeName();
+            return typeName != null && !Void.class.getName().equals(typeName);
+        }
+
+        @Override
+        String getDescription() {
+            return "beanType";
+        }
+    }
+
+    private static final class WithoutParameters<T extends Member> extends Decidable<T> {
+
+        @Override
+        boolean matches(Member member) {
+            return !(member instanceof Method) || ((Method) member).getParameterCount() == 0;
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return member.getParameterCount() == 0;
+        }
+
+        @Override
+        String getDescription() {
+            return "parameters(0)";
+        }
+    }
+
+    /**
+     * Excludes methods declared by {@link Object}, the members of class files are declared by other classes only.
+     */
+    private static final class NoObjectMethod<T extends Member> extends Decidable<T> {
+
+        @Override
+        boolean matches(Member member) {
+            return member.getDeclaringClass() != Object.class;
+        }
+
+        @Override
+        boolean matches(ClassFileMembers.Member member) {
+            return true;
+        }
+
+        @Override
+        String getDescription() {
+            return "!objectMethod";
+        }
+    }
+
+    private static final class Opaque<T extends Member> extends MemberPredicate<T> {
+
+        private final Predicate<? super T> predicate;
+
+        private Opaque(Predicate<? super T> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean matches(Member member) {
+            return predicate.test((T) member);
+        }
+
+        @Override
+        boolean mayMatch(ClassFileMembers.Member member) {
+            return true;
+        }
+
+        @Override
+        boolean mustMatch(ClassFileMembers.Member member) {
+            return false;
+        }
+
+        @Override
+        String getDescription() {
+            return null;
+        }
+    }
+
+    /**
+     * A conjunction or disjunction of predicates, flattening nested ones of the same kind.
+     */
+    private static final class Junction<T extends Member> extends MemberPredicate<T> {
+
+        private final boolean conjunction;
+        private final List<MemberPredicate<?>> parts = new ArrayList<>();
+
+        private Junction(boolean conjunction, MemberPredicate<?> first, MemberPredicate<?> second) {
+            this.conjunction = conjunction;
+            add(first);
+            add(second);
+        }
+
+        private void add(MemberPredicate<?> part) {
+            if (part instanceof Junction && ((Junction<?>) part).conjunction == conjunction) {
+                parts.addAll(((Junction<?>) part).parts);
+            } else {
+                parts.add(part);
+            }
+        }
+
+        @Override
+        boolean matches(Member member) {
+            for (MemberPredicate<?> part : parts) {
+                if (part.matches(member) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        @Override
+        boolean mayMatch(ClassFileMembers.Member member) {
+            for (MemberPredicate<?> part : parts) {
+                if (part.mayMatch(member) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        @Override
+        boolean mustMatch(ClassFileMembers.Member member) {
+            for (MemberPredicate<?> part : parts) {
+                if (part.mustMatch(member) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        @Override
+        String getDescription() {
+            List<String> descriptions = new ArrayList<>();
+            for (MemberPredicate<?> part : parts) {
+                String description = part.getDescription();
+                if (description == null) {
+                    return null;
+                }
+                descriptions.add(part instanceof Junction ? '(' + description + ')' : description);
+            }
+            return String.join(conjunction ? "&" : "|", descriptions);
+        }
+    }
+
+    private static final class Not<T extends Member> extends MemberPredicate<T> {
+
+        private final MemberPredicate<T> negated;
+
+        private Not(MemberPredicate<T> negated) {
+            this.negated = negated;
+        }
+
+        @Override
+        boolean matches(Member member) {
+            return !negated.matches(member);
+        }
+
+        @Override
+        boolean mayMatch(ClassFileMembers.Member member) {
+            return !negated.mustMatch(member);
+        }
+
+        @Override
+        boolean mustMatch(ClassFileMembers.Member member) {
+            return !negated.mayMatch(member);
+        }
+
+        @Override
+        public Predicate<T> negate() {
+            return negated;
+        }
+
+        @Override
+        String getDescription() {
+            String description = negated.getDescription();
+            return description == null ? null : "!(" + description + ')';
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package diergo.spring.legacy;
 
-import static java.util.Arrays.asList;
-
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
@@ -11,100 +9,99 @@ import java.util.regex.Pattern;
 
 /**
  * Predicates to filter methods and fields.
+ * The predicates and their combinations by {@link Predicate#and(Predicate)}, {@link Predicate#or(Predicate)} and
+ * {@link Predicate#negate()} are structured, so they can be checked on class files before loading classes and are
+ * recorded by the legacy bean index and scan cache to detect changed rules.
  *
  * @see LegacyBeanRegistryPostProcessorBuilder
  */
 public final class MemberPredicates {
 
-    private static final Pattern GETTERS = Pattern.compile("get[A-Z].+");
-    private static final Pattern CONSTANTS = Pattern.compile("[A-Z][A-Z0-9_]+");
+    private static final Pattern GETTERS = Pattern.compile(MemberPredicate.GETTERS);
+    private static final Pattern CONSTANTS = Pattern.compile(MemberPredicate.CONSTANTS);
 
     /**
      * Allow any members.
      */
     public static <T extends Member> Predicate<T> all() {
-        return member -> true;
+        return MemberPredicate.all();
     }
 
     /**
      * Allow members declared on type level aka static.
      */
     public static <T extends Member> Predicate<T> atClass() {
-        return member -> Modifier.isStatic(member.getModifiers());
+        return MemberPredicate.modifiers(Modifier.STATIC, 0);
     }
 
     /**
      * Allow members declared on instance level aka non static.
      */
     public static <T extends Member> Predicate<T> atInstance() {
-        return member -> !Modifier.isStatic(member.getModifiers());
+        return MemberPredicate.modifiers(0, Modifier.STATIC);
     }
 
     /**
      * Allow members declared visible aka non private.
      */
     public static <T extends Member> Predicate<T> visible() {
-        return member -> !Modifier.isPrivate(member.getModifiers());
+        return MemberPredicate.modifiers(0, Modifier.PRIVATE);
     }
 
     /**
      * Allow members having any of the passed names.
      */
     public static <T extends Member> Predicate<T> named(String... names) {
-        return member -> asList(names).contains(member.getName());
+        return MemberPredicate.named(names);
     }
 
     /**
      * Allow members having a name matching the pattern.
      */
     public static <T extends Member> Predicate<T> named(Pattern name) {
-        return member -> name.matcher(member.getName()).matches();
+        return MemberPredicate.named(name);
     }
 
     /**
      * Allow fields with the specified type or a subtype.
      */
     public static Predicate<Field> withType(Class<?> type) {
-        return field -> type.isAssignableFrom(field.getType());
+        return MemberPredicate.ofType(type);
     }
 
     /**
      * Allow fields with any valid bean type. This excludes primitive types and arrays.
      */
     public static Predicate<Field> withBeanType() {
-        return field -> field.getType() != Void.class
-                && !field.getType().isPrimitive()
-                && !field.getType().isArray();
+        return MemberPredicate.ofBeanType();
     }
 
     /**
      * Allow methods returning the specified type or a subtype.
      */
     public static Predicate<Method> returning(Class<?> returnType) {
-        return method -> returnType.isAssignableFrom(method.getReturnType());
+        return MemberPredicate.ofType(returnType);
     }
 
     /**
      * Allow methods returning any valid bean type. This excludes primitive types and arrays.
      */
     public static Predicate<Method> returningBeanType() {
-        return method -> method.getReturnType() != Void.class
-                && !method.getReturnType().isPrimitive()
-                && !method.getReturnType().isArray();
+        return MemberPredicate.ofBeanType();
     }
 
     /**
      * Allow methods without any parameter.
      */
     public static Predicate<Method> withoutParameters() {
-        return method -> method.getParameterCount() == 0;
+        return MemberPredicate.withoutParameters();
     }
 
     /**
      * Allow methods not inherited from {@link Object}.
      */
     public static Predicate<Method> noObjectMethod() {
-        return method -> method.getDeclaringClass() != Object.class;
+        return MemberPredicate.noObjectMethod();
     }
 
     /**
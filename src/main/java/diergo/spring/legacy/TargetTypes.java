@@ -0,0 +1,59 @@
+package diergo.spring.legacy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.ResolvableType;
+
+/**
+ * Keeps the type of the member providing a bean with its bean definition, so the bean factory does not have to
+ * introspect factory methods or load bean classes to match the bean by type.
+ * The type is noted on customization and set as target type of a {@link RootBeanDefinition} on registration,
+ * because only root bean definitions keep their target type when they are merged.
+ * Bean definitions created for members known by name only are left untouched to not load their classes.
+ *
+ * @see RootBeanDefinition#setTargetType(ResolvableType)
+ */
+final class TargetTypes {
+
+    private static final String TARGET_TYPE_ATTRIBUTE = TargetTypes.class.getName() + ".targetType";
+
+    private TargetTypes() {
+    }
+
+    /**
+     * Note the type of the field or the return type of the method providing the bean.
+     */
+    static void customize(BeanDefinition bd, Member access) {
+        if (access instanceof Field) {
+            bd.setAttribute(TARGET_TYPE_ATTRIBUTE, ResolvableType.forField((Field) access));
+        } else if (access instanceof Method) {
+            bd.setAttribute(TARGET_TYPE_ATTRIBUTE, ResolvableType.forMethodReturnType((Method) access));
+        }
+    }
+
+    /**
+     * Get the bean definition to register with the target type noted.
+     *
+     * @return a root bean definition with the target type set or the bean definition passed if no type is noted
+     */
+    static BeanDefinition resolve(BeanDefinition bd) {
+        Object targetType = bd.getAttribute(TARGET_TYPE_ATTRIBUTE);
+        if (!(targetType instanceof ResolvableType) || !(bd instanceof AbstractBeanDefinition)) {
+            return bd;
+        }
+        RootBeanDefinition rbd;
+        if (bd instanceof RootBeanDefinition) {
+            rbd = (RootBeanDefinition) bd;
+        } else {
+            rbd = new RootBeanDefinition();
+            rbd.overrideFrom(bd);
+        }
+        rbd.removeAttribute(TARGET_TYPE_ATTRIBUTE);
+        rbd.setTargetType((ResolvableType) targetType);
+        return rbd;
+    }
+}
@@ -0,0 +1,79 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacyFactoryBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class BeanDefinitionLookupTest {
+
+    private SimpleBeanDefinitionRegistry registry;
+
+    @Test
+    public void beanNameIsFoundByClassName() {
+        registry.registerBeanDefinition("factory", new RootBeanDefinition(LegacyFactoryBean.class));
+
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(registry);
+
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.of("factory")));
+    }
+
+    @Test
+    public void missingBeanNameIsNotFound() {
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(registry);
+
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.empty()));
+    }
+
+    @Test
+    public void firstBeanNameIsFoundForSameClassName() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("first", new RootBeanDefinition(LegacyFactoryBean.class));
+        beanFactory.registerBeanDefinition("second", new RootBeanDefinition(LegacyFactoryBean.class));
+
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(beanFactory);
+
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.of("first")));
+    }
+
+    @Test
+    public void registryIsIndexedOnFirstLookup() {
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(registry);
+        registry.registerBeanDefinition("factory", new RootBeanDefinition(LegacyFactoryBean.class));
+
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.of("factory")));
+        registry.removeBeanDefinition("factory");
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.of("factory")));
+    }
+
+    @Test
+    public void addedBeanDefinitionIsFound() {
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(registry);
+        tested.findBeanName(LegacyFactoryBean.class.getName());
+
+        tested.add("factory", new RootBeanDefinition(LegacyFactoryBean.class));
+
+        assertThat(tested.findBeanName(LegacyFactoryBean.class.getName()), is(Optional.of("factory")));
+    }
+
+    @Test
+    public void methodsAreCached() {
+        BeanDefinitionLookup tested = new BeanDefinitionLookup(registry);
+
+        assertThat(tested.getAllMethods(LegacyFactoryBean.class),
+                sameInstance(tested.getAllMethods(LegacyFactoryBean.class)));
+    }
+
+    @BeforeEach
+    void createRegistry() {
+        registry = new SimpleBeanDefinitionRegistry();
+    }
+}
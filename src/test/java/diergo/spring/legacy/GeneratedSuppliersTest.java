@@ -0,0 +1,136 @@
+package diergo.spring.legacy;
+
+import example.legacy.CreatedPrototype;
+import example.legacy.LegacyFactoryBean;
+import example.legacy.LegacyPrototypeByStaticMethod;
+import example.legacy.LegacySingletonByMethod;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.function.Supplier;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_PROTOTYPE;
+
+public class GeneratedSuppliersTest {
+
+    @Test
+    public void staticFactoryMethodIsCalledBySupplier() {
+        RootBeanDefinition bd = new RootBeanDefinition(LegacySingletonByMethod.class);
+        bd.setFactoryMethodName("getInstance");
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        assertThat(bd.getFactoryMethodName(), is("getInstance"));
+        assertThat(bd.getInstanceSupplier().get(), sameInstance(LegacySingletonByMethod.getInstance()));
+    }
+
+    @Test
+    public void staticFactoryMethodOfClassKnownByNameIsCalledBySupplier() {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+        bd.setBeanClassName(LegacyPrototypeByStaticMethod.class.getName());
+        bd.setFactoryMethodName("createInstance");
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        Supplier<?> actual = bd.getInstanceSupplier();
+        assertThat(actual.get(), instanceOf(LegacyPrototypeByStaticMethod.class));
+        assertThat(actual.get(), not(sameInstance(actual.get())));
+    }
+
+    @Test
+    public void nonPublicStaticFactoryMethodIsCalledBySupplier() {
+        RootBeanDefinition bd = new RootBeanDefinition(HiddenLegacy.class);
+        bd.setFactoryMethodName("create");
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        assertThat(bd.getInstanceSupplier().get(), instanceOf(HiddenLegacy.class));
+    }
+
+    @Test
+    public void missingFactoryMethodFailsOnBeanCreation() {
+        RootBeanDefinition bd = new RootBeanDefinition(LegacySingletonByMethod.class);
+        bd.setFactoryMethodName("getMissing");
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        assertThrows(BeanCreationException.class, () -> bd.getInstanceSupplier().get());
+    }
+
+    @Test
+    public void factoryBeanMethodIsCalledBySupplierOfBeanFactory() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("factory", new RootBeanDefinition(LegacyFactoryBean.class));
+        RootBeanDefinition bd = new RootBeanDefinition(CreatedPrototype.class);
+        bd.setFactoryBeanName("factory");
+        bd.setFactoryMethodName("createPrototype");
+        bd.setScope(SCOPE_PROTOTYPE);
+
+        GeneratedSuppliers.customize(bd, beanFactory);
+        beanFactory.registerBeanDefinition("prototype", bd);
+
+        assertThat(bd.getInstanceSupplier(), notNullValue());
+        assertThat(beanFactory.getBean("prototype"), instanceOf(CreatedPrototype.class));
+        assertThat(beanFactory.getBean("prototype"), not(sameInstance(beanFactory.getBean("prototype"))));
+    }
+
+    @Test
+    public void factoryBeanMethodIsKeptWithoutBeanFactory() {
+        RootBeanDefinition bd = new RootBeanDefinition(CreatedPrototype.class);
+        bd.setFactoryBeanName("factory");
+        bd.setFactoryMethodName("createPrototype");
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        assertThat(bd.getInstanceSupplier(), nullValue());
+    }
+
+    @Test
+    public void beanDefinitionWithoutFactoryMethodIsUntouched() {
+        RootBeanDefinition bd = new RootBeanDefinition(LegacySingletonByMethod.class);
+
+        GeneratedSuppliers.customize(bd, new SimpleBeanDefinitionRegistry());
+
+        assertThat(bd.getInstanceSupplier(), nullValue());
+    }
+
+    @Test
+    public void postProcessorRegistersBeansWithSuppliers() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example.legacy")
+                .prototypesFrom().methods(named("createInstance"))
+                .generatedSuppliers()
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        String[] names = beanFactory.getBeanNamesForType(LegacyPrototypeByStaticMethod.class);
+        assertThat(names.length, is(1));
+        assertThat(((RootBeanDefinition) beanFactory.getMergedBeanDefinition(names[0])).getInstanceSupplier(),
+                notNullValue());
+        assertThat(beanFactory.getBean(names[0]), instanceOf(LegacyPrototypeByStaticMethod.class));
+    }
+
+    static class HiddenLegacy {
+
+        static HiddenLegacy create() {
+            return new HiddenLegacy();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.isA;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SINGLETON;
+
+public class LegacyBeanIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void indexContainsBeansFoundByScan() throws IOException {
+        String actual = write(createPostProcessor().createIndex());
+
+        assertThat(actual, containsString("example=package\n"));
+        assertThat(actual, containsString(LegacySingletonByField.class.getName() + "=INSTANCE,singleton,field\n"));
+        assertThat(actual, containsString(LegacySingletonByMethod.class.getName() + "=getInstance,singleton,method\n"));
+    }
+
+    @Test
+    public void indexIsReadAsWritten() throws IOException {
+        LegacyBeanIndex index = createPostProcessor().createIndex();
+
+        LegacyBeanIndex actual = LegacyBeanIndex.read(new BufferedReader(new StringReader(write(index))));
+
+        assertThat(write(actual), is(write(index)));
+        assertThat(actual.covers("example.legacy"), is(true));
+        assertThat(actual.covers("diergo"), is(false));
+        assertThat(actual.getEntries("example.legacy"), hasSize(index.getEntries("example").size()));
+    }
+
+    @Test
+    public void indexedBeansAreRegisteredWithoutScan() throws IOException {
+        Path file = tempDir.resolve("legacy.index");
+        Files.write(file, ("example=package\n" + writeRules(createPostProcessor())
+                + LegacySingletonByField.class.getName() + "=INSTANCE,singleton,field\n").getBytes(UTF_8));
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder().indexedBy(file.toUri().toString()).build(), registry);
+
+        List<String> actual = getBeanClassNames(registry);
+        assertThat(actual, hasItem(LegacySingletonByField.class.getName()));
+        assertThat(actual, not(hasItem(LegacySingletonByMethod.class.getName())));
+        BeanDefinition bd = registry.getBeanDefinition(registry.getBeanDefinitionNames()[0]);
+        assertThat(bd.getScope(), is(SCOPE_SINGLETON));
+        assertThat(bd.isLazyInit(), is(true));
+        assertThat(((AbstractBeanDefinition) bd).getInstanceSupplier().get(), isA(LegacySingletonByField.class));
+    }
+
+    @Test
+    public void indexNotCoveringBasePackagesIsIgnored() throws IOException {
+        Path file = tempDir.resolve("legacy.index");
+        Files.write(file, "example.spring=package\n".getBytes(UTF_8));
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder().indexedBy(file.toUri().toString()).build(), registry);
+
+        assertThat(getBeanClassNames(registry), hasItem(LegacySingletonByMethod.class.getName()));
+    }
+
+    @Test
+    public void indexRecordsRules() throws IOException {
+        String actual = write(createPostProcessor().createIndex());
+
+        assertThat(actual, containsString("*=rule,singleton fields: "));
+        assertThat(actual, containsString("named(INSTANCE)\n"));
+        assertThat(LegacyBeanIndex.read(new BufferedReader(new StringReader(actual)))
+                .forRules(createPostProcessor().getRules()), notNullValue());
+    }
+
+    @Test
+    public void indexCreatedByOtherRulesIsIgnored() throws IOException {
+        Path file = tempDir.resolve("legacy.index");
+        Files.write(file, ("example=package\n*=rule,singleton fields: named(OTHER)\n"
+                + LegacySingletonByField.class.getName() + "=INSTANCE,singleton,field\n").getBytes(UTF_8));
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder().indexedBy(file.toUri().toString()).build(), registry);
+
+        assertThat(getBeanClassNames(registry), hasItem(LegacySingletonByMethod.class.getName()));
+    }
+
+    @Test
+    public void indexIsIgnoredForOpaqueRules() throws IOException {
+        Path file = tempDir.resolve("legacy.index");
+        Files.write(file, ("example=package\n"
+                + LegacySingletonByField.class.getName() + "=INSTANCE,singleton,field\n").getBytes(UTF_8));
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        List<LegacyScanReport> reports = new ArrayList<>();
+
+        postProcess(legacyPackages("example.legacy").singletonsFrom().methods(method -> true)
+                .indexedBy(file.toUri().toString()).reportingTo(reports::add).build(), registry);
+
+        assertThat(reports.get(0).isIndexed(), is(false));
+        assertThat(getBeanClassNames(registry), hasItem(LegacySingletonByMethod.class.getName()));
+    }
+
+    @Test
+    public void postProcessorsWithOpaqueRulesCannotBeIndexed() {
+        Path file = tempDir.resolve("legacy.index");
+
+        assertThrows(IllegalArgumentException.class, () -> LegacyBeanIndex.main(file.toString(),
+                LegacyBeanIndexTest.class.getName() + "#createOpaquePostProcessor"));
+    }
+
+    @Test
+    public void entriesOfOtherPostProcessorsAreNotRegistered() throws IOException {
+        Path file = tempDir.resolve("legacy.index");
+        LegacyBeanIndex.main(file.toString(), LegacyBeanIndexTest.class.getName() + "#createLegacyPostProcessor",
+                LegacyBeanIndexTest.class.getName() + "#createFieldPostProcessor");
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        List<LegacyScanReport> reports = new ArrayList<>();
+
+        postProcess(legacyPackages("example.legacy").singletonsFrom().fields(named("INSTANCE"))
+                .indexedBy(file.toUri().toString()).reportingTo(reports::add).build(), registry);
+
+        assertThat(reports.get(0).isIndexed(), is(true));
+        assertThat(getBeanClassNames(registry), contains(LegacySingletonByField.class.getName()));
+        assertThat(new String(Files.readAllBytes(file), UTF_8), containsString("*=processor\n"));
+    }
+
+    @Test
+    public void missingIndexFallsBackToScan() {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder().build(), registry);
+
+        List<String> actual = getBeanClassNames(registry);
+        assertThat(actual, hasItem(LegacySingletonByField.class.getName()));
+        assertThat(actual, hasItem(LegacySingletonByMethod.class.getName()));
+    }
+
+    @Test
+    public void mainWritesIndexFile() throws IOException {
+        Path file = tempDir.resolve("META-INF/spring-legacy.index");
+
+        LegacyBeanIndex.main(file.toString(), LegacyBeanIndexTest.class.getName() + "#createLegacyPostProcessor");
+
+        assertThat(new String(Files.readAllBytes(file), UTF_8),
+                containsString(LegacySingletonByField.class.getName() + "=INSTANCE,singleton,field\n"));
+    }
+
+    static BeanDefinitionRegistryPostProcessor createLegacyPostProcessor() {
+        return createBuilder().build();
+    }
+
+    static BeanDefinitionRegistryPostProcessor createFieldPostProcessor() {
+        return legacyPackages("example.legacy").singletonsFrom().fields(named("INSTANCE")).build();
+    }
+
+    static BeanDefinitionRegistryPostProcessor createOpaquePostProcessor() {
+        return legacyPackages("example.legacy").singletonsFrom().fields(field -> true).build();
+    }
+
+    private static LegacyBeanRegistryPostProcessorBuilder createBuilder() {
+        return legacyPackages("example")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"));
+    }
+
+    private static LegacyBeanRegistryPostProcessor createPostProcessor() {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) createLegacyPostProcessor();
+        processor.setEnvironment(new StandardEnvironment());
+        return processor;
+    }
+
+    private static void postProcess(BeanDefinitionRegistryPostProcessor processor,
+                                    SimpleBeanDefinitionRegistry registry) {
+        ((LegacyBeanRegistryPostProcessor) processor).setEnvironment(new StandardEnvironment());
+        processor.postProcessBeanDefinitionRegistry(registry);
+    }
+
+    private static String writeRules(LegacyBeanRegistryPostProcessor processor) {
+        return processor.getRules().stream()
+                .map(rule -> "*=rule," + rule + '\n')
+                .collect(joining());
+    }
+
+    private static String write(LegacyBeanIndex index) throws IOException {
+        StringWriter out = new StringWriter();
+        index.write(out);
+        return out.toString();
+    }
+
+    private static List<String> getBeanClassNames(SimpleBeanDefinitionRegistry registry) {
+        return Stream.of(registry.getBeanDefinitionNames())
+                .map(name -> registry.getBeanDefinition(name).getBeanClassName())
+                .collect(toList());
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
 
+import java.io.IOException;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_PROTOTYPE;
@@ -67,6 +69,24 @@ public class LegacyBeanMethodFilterTest {
         assertThat(matchBeanDefinition(NonSingletonBean.class, tested), is(false));
     }
 
+    @Test
+    public void classFileWithStaticMethodReturningOwnTypeMatches() throws IOException {
+        LegacyBeanMethodFilter tested = new LegacyBeanMethodFilter(SCOPE_SINGLETON, method -> true);
+        assertThat(matchClassFile(LegacySingletonByMethod.class, tested), is(true));
+        assertThat(matchClassFile(LegacyPrototypeByStaticMethod.class, tested), is(true));
+    }
+
+    @Test
+    public void classFileWithoutStaticMethodReturningOwnTypeDoesNotMatch() throws IOException {
+        LegacyBeanMethodFilter tested = new LegacyBeanMethodFilter(SCOPE_SINGLETON, method -> true);
+        assertThat(matchClassFile(NonSingletonBean.class, tested), is(false));
+        assertThat(tested.matchClassFile(new TestMetadataReader(NonSingletonBean.class), EXAMPLE_FACTORY), is(false));
+    }
+
+    private boolean matchClassFile(Class<?> type, CustomizingTypeFilter<?> filter) throws IOException {
+        return filter.matchClassFile(EXAMPLE_FACTORY.getMetadataReader(type.getName()), EXAMPLE_FACTORY);
+    }
+
     private boolean matchTypeFilter(Class<?> type, CustomizingTypeFilter<?> filter) {
         return filter.match(new TestMetadataReader(type), EXAMPLE_FACTORY);
     }
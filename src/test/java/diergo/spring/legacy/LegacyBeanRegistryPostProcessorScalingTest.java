@@ -0,0 +1,203 @@
+package diergo.spring.legacy;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LegacyBeanRegistryPostProcessorScalingTest {
+
+    private static final int RUNS = 3;
+    private static final double MAX_GROWTH = 2;
+
+    @TempDir
+    static Path tempDir;
+
+    private static SyntheticLegacyClasses small;
+    private static SyntheticLegacyClasses large;
+    private static Path smallClasses;
+    private static Path largeClasses;
+
+    @Test
+    public void allBeansOfSyntheticClassesAreRegistered() throws IOException {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder(small), registry, new SyntheticLegacyClasses.CountingClassLoader(smallClasses));
+
+        assertThat(countBeans(registry, small), is((long) small.getBeans()));
+    }
+
+    @Test
+    public void beansOfSyntheticJarAreRegistered() throws IOException {
+        SyntheticLegacyClasses jarred = new SyntheticLegacyClasses("synthetic.jarred")
+                .singletonFields(3).singletonMethods(2).factories(2).noise(5);
+        Path jar = jarred.jar(tempDir.resolve("jarred"));
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        postProcess(createBuilder(jarred), registry, new SyntheticLegacyClasses.CountingClassLoader(jar));
+
+        assertThat(countBeans(registry, jarred), is((long) jarred.getBeans()));
+    }
+
+    @Test
+    public void failingStaticInitializerFailsOnBeanCreationOnly() throws IOException {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        SyntheticLegacyClasses.CountingClassLoader classLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses);
+        beanFactory.setBeanClassLoader(classLoader);
+
+        postProcess(createBuilder(small), beanFactory, classLoader);
+
+        assertThat(beanFactory.getBean(getBeanName(beanFactory, "SingletonField0")) != null, is(true));
+        assertThrows(BeanCreationException.class,
+                () -> beanFactory.getBean(getBeanName(beanFactory, "FailingInitializer0")));
+    }
+
+    @Test
+    public void beansRegisteredByClassNameAreCreatedFromSyntheticClassLoader() throws IOException {
+        Path cache = tempDir.resolve("cache").resolve("legacy-scan.cache");
+        postProcess(createBuilder(small).scanCache(cache).generatedSuppliers(), new SimpleBeanDefinitionRegistry(),
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses));
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        SyntheticLegacyClasses.CountingClassLoader classLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses);
+        beanFactory.setBeanClassLoader(classLoader);
+
+        postProcess(createBuilder(small).scanCache(cache).generatedSuppliers(), beanFactory, classLoader);
+
+        for (String simpleName : new String[] {"SingletonField0", "SingletonMethod0", "Factory0"}) {
+            assertThat(beanFactory.getBean(getBeanName(beanFactory, simpleName)).getClass().getClassLoader(),
+                    is(classLoader));
+        }
+    }
+
+    @Test
+    public void singletonPatternBeansAreCreatedFromSyntheticClassLoader() throws IOException {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        SyntheticLegacyClasses.CountingClassLoader classLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses);
+        beanFactory.setBeanClassLoader(classLoader);
+
+        postProcess(legacyPackages(small.getPackageName()).singletonsFrom().singletonPattern(), beanFactory,
+                classLoader);
+
+        assertThat(beanFactory.getBean(getBeanName(beanFactory, "SingletonField0")).getClass().getClassLoader(),
+                is(classLoader));
+    }
+
+    @Test
+    public void classFileMatchingLoadsBeanClassesOnly() throws IOException {
+        SyntheticLegacyClasses.CountingClassLoader smallLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses);
+        SyntheticLegacyClasses.CountingClassLoader largeLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(largeClasses);
+
+        postProcess(createBuilder(small).classFileMatching(), new SimpleBeanDefinitionRegistry(), smallLoader);
+        postProcess(createBuilder(large).classFileMatching(), new SimpleBeanDefinitionRegistry(), largeLoader);
+
+        assertThat(smallLoader.getLoaded(), is(small.getBeans()));
+        assertThat(largeLoader.getLoaded(), is(large.getBeans()));
+    }
+
+    @Test
+    public void loadedClassesGrowLinearly() throws IOException {
+        SyntheticLegacyClasses.CountingClassLoader smallLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(smallClasses);
+        SyntheticLegacyClasses.CountingClassLoader largeLoader =
+                new SyntheticLegacyClasses.CountingClassLoader(largeClasses);
+
+        postProcess(createBuilder(small), new SimpleBeanDefinitionRegistry(), smallLoader);
+        postProcess(createBuilder(large), new SimpleBeanDefinitionRegistry(), largeLoader);
+
+        assertThat(smallLoader.getLoaded(), is(small.getClasses()));
+        assertThat(largeLoader.getLoaded(), is(large.getClasses()));
+    }
+
+    @Test
+    public void scanTimeGrowsLinearly() throws IOException {
+        scan(small, smallClasses);
+        long smallTime = scan(small, smallClasses);
+        long largeTime = scan(large, largeClasses);
+
+        double growth = (double) largeTime / smallTime / large.getClasses() * small.getClasses();
+        assertThat("scan of " + large.getClasses() + " classes took " + largeTime / 1000000 + "ms, of "
+                + small.getClasses() + " classes " + smallTime / 1000000 + "ms", growth, lessThan(MAX_GROWTH));
+    }
+
+    @BeforeAll
+    static void compileSyntheticClasses() throws IOException {
+        small = createClasses("synthetic.small", 1);
+        large = createClasses("synthetic.large", 4);
+        smallClasses = small.compile(tempDir.resolve("small"));
+        largeClasses = large.compile(tempDir.resolve("large"));
+    }
+
+    private static SyntheticLegacyClasses createClasses(String packageName, int factor) {
+        return new SyntheticLegacyClasses(packageName)
+                .singletonFields(20 * factor)
+                .singletonMethods(20 * factor)
+                .factories(10 * factor)
+                .noise(200 * factor)
+                .failingInitializers(2 * factor);
+    }
+
+    /**
+     * Get the best time of several scans, each with a new class loader.
+     */
+    private static long scan(SyntheticLegacyClasses classes, Path classPath) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; ++i) {
+            SyntheticLegacyClasses.CountingClassLoader classLoader =
+                    new SyntheticLegacyClasses.CountingClassLoader(classPath);
+            long start = System.nanoTime();
+            postProcess(createBuilder(classes), new SimpleBeanDefinitionRegistry(), classLoader);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static LegacyBeanRegistryPostProcessorBuilder createBuilder(SyntheticLegacyClasses classes) {
+        return legacyPackages(classes.getPackageName())
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"))
+                .prototypesFrom().methods(named("createInstance"));
+    }
+
+    private static void postProcess(LegacyBeanRegistryPostProcessorBuilder builder,
+                                    BeanDefinitionRegistry registry,
+                                    ClassLoader classLoader) {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+        processor.setBeanClassLoader(classLoader);
+        processor.postProcessBeanDefinitionRegistry(registry);
+    }
+
+    private static long countBeans(SimpleBeanDefinitionRegistry registry, SyntheticLegacyClasses classes) {
+        return Stream.of(registry.getBeanDefinitionNames())
+                .map(name -> registry.getBeanDefinition(name).getBeanClassName())
+                .filter(className -> className != null && className.startsWith(classes.getPackageName() + '.'))
+                .count();
+    }
+
+    private static String getBeanName(DefaultListableBeanFactory beanFactory, String simpleName) {
+        return Stream.of(beanFactory.getBeanDefinitionNames())
+                .filter(name -> beanFactory.getBeanDefinition(name).getBeanClassName().endsWith('.' + simpleName))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+    }
+}
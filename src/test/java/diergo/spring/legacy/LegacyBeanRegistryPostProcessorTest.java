@@ -15,8 +15,10 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
 import org.springframework.context.annotation.AnnotationBeanNameGenerator;
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.Ordered;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 
@@ -31,6 +33,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_SINGLETON;
 
@@ -91,6 +96,29 @@ public class LegacyBeanRegistryPostProcessorTest {
         assertThat(definitions.isEmpty(), is(false));
     }
 
+    @Test
+    public void metadataReaderFactoryOfSpringBootIsShared() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        CachingMetadataReaderFactory shared = new CachingMetadataReaderFactory();
+        beanFactory.registerSingleton(LegacyBeanRegistryPostProcessor.SHARED_METADATA_READER_FACTORY_BEAN_NAME, shared);
+
+        tested.postProcessBeanDefinitionRegistry(beanFactory);
+
+        verify(filter, atLeastOnce()).match(any(MetadataReader.class), same(shared));
+    }
+
+    @Test
+    public void metadataIsCachedByContextUntilRefresh() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        tested.setResourceLoader(context);
+
+        tested.postProcessBeanDefinitionRegistry(new SimpleBeanDefinitionRegistry());
+
+        assertThat(context.getResourceCache(MetadataReader.class).isEmpty(), is(false));
+        context.refresh();
+        assertThat(context.getResourceCache(MetadataReader.class).isEmpty(), is(true));
+    }
+
     @BeforeEach
     void createProcessor() {
         tested = new LegacyBeanRegistryPostProcessor(singletonList(filter), singletonList(factory),
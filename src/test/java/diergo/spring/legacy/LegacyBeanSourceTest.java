@@ -0,0 +1,190 @@
+package diergo.spring.legacy;
+
+import example.legacy.CreatedPrototype;
+import example.legacy.CreatedSingleton;
+import example.legacy.LegacyFactoryBean;
+import example.legacy.LegacyPrototypeByStaticMethod;
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LegacyBeanSourceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void sourceCallsStaticMembersDirectly() throws IOException {
+        String actual = write(createPostProcessor().createSource());
+
+        assertThat(actual, containsString("() -> " + LegacySingletonByField.class.getName() + ".INSTANCE,"));
+        assertThat(actual, containsString("() -> " + LegacySingletonByMethod.class.getName() + ".getInstance(),"));
+        assertThat(actual, containsString("() -> " + LegacyPrototypeByStaticMethod.class.getName()
+                + ".createInstance(),"));
+        assertThat(actual, containsString("bd.setScope(\"prototype\");"));
+    }
+
+    @Test
+    public void sourceCallsFactoryMethodsOfFactoryBeanByName() throws IOException {
+        String actual = write(createPostProcessor().createSource());
+
+        String factoryBean = "\"" + LegacyFactoryBean.class.getName() + "#0\"";
+        assertThat(actual, containsString("() -> context.getBean(" + factoryBean + ", "
+                + LegacyFactoryBean.class.getName() + ".class).getSingleton(),"));
+        assertThat(actual, containsString("() -> context.getBean(" + factoryBean + ", "
+                + LegacyFactoryBean.class.getName() + ".class).createPrototype(),"));
+        assertThat(actual, containsString("bd.setDependsOn(" + factoryBean + ");"));
+    }
+
+    @Test
+    public void nonPublicMemberCannotBeGenerated() {
+        LegacyBeanRegistryPostProcessor tested = (LegacyBeanRegistryPostProcessor) legacyPackages("diergo.spring.legacy")
+                .singletonsFrom().methods(named("createHidden"))
+                .build();
+        tested.setEnvironment(new StandardEnvironment());
+
+        assertThrows(IllegalArgumentException.class, tested::createSource);
+    }
+
+    @Test
+    public void checkedExceptionsAreThrownAsBeanCreationException() throws Exception {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("diergo.spring.legacy")
+                .singletonsFrom().methods(named("getCheckedInstance"))
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+        Path source = tempDir.resolve("generated").resolve("CheckedBeans.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, write(processor.createSource()).replace("LegacyBeans", "CheckedBeans").getBytes(UTF_8));
+        int result = ToolProvider.getSystemJavaCompiler().run(null, null, null, "-classpath", getClassPath(),
+                "-d", tempDir.toString(), source.toString());
+        assertThat(new String(Files.readAllBytes(source), UTF_8), result, is(0));
+        GenericApplicationContext context = new GenericApplicationContext();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {tempDir.toUri().toURL()},
+                getClass().getClassLoader())) {
+            @SuppressWarnings("unchecked")
+            ApplicationContextInitializer<GenericApplicationContext> initializer =
+                    (ApplicationContextInitializer<GenericApplicationContext>) classLoader
+                            .loadClass("generated.CheckedBeans").newInstance();
+            initializer.initialize(context);
+        }
+        context.refresh();
+
+        assertThat(context.getBean(CheckedLegacy.class), sameInstance(CheckedLegacy.INSTANCE));
+        assertThrows(BeanCreationException.class, () -> context.getBean(FailingLegacy.class));
+        context.close();
+    }
+
+    @Test
+    public void generatedInitializerRegistersBeansWithoutPostProcessor() throws Exception {
+        LegacyBeanSource.main(tempDir.toString(), "generated.LegacyBeans", "example.spring.SpringConfig#legacySingletons");
+        Path source = tempDir.resolve("generated").resolve("LegacyBeans.java");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-classpath", getClassPath(), "-d", tempDir.toString(),
+                source.toString());
+        assertThat(new String(Files.readAllBytes(source)), result, is(0));
+        GenericApplicationContext context = new GenericApplicationContext();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {tempDir.toUri().toURL()},
+                getClass().getClassLoader())) {
+            @SuppressWarnings("unchecked")
+            ApplicationContextInitializer<GenericApplicationContext> initializer =
+                    (ApplicationContextInitializer<GenericApplicationContext>) classLoader
+                            .loadClass("generated.LegacyBeans").newInstance();
+            initializer.initialize(context);
+        }
+        context.refresh();
+
+        assertThat(context.getBean(LegacySingletonByField.class), sameInstance(LegacySingletonByField.INSTANCE));
+        assertThat(context.getBean(LegacySingletonByMethod.class), sameInstance(LegacySingletonByMethod.getInstance()));
+        assertThat(context.getBean(LegacyPrototypeByStaticMethod.class),
+                not(sameInstance(context.getBean(LegacyPrototypeByStaticMethod.class))));
+        assertThat(context.getBean(CreatedSingleton.class), sameInstance(context.getBean(CreatedSingleton.class)));
+        assertThat(context.getBean(CreatedPrototype.class), instanceOf(CreatedPrototype.class));
+        BeanDefinition bd = context.getBeanDefinition(context.getBeanNamesForType(LegacySingletonByField.class)[0]);
+        assertThat(bd.getFactoryMethodName(), nullValue());
+        assertThat(bd.isLazyInit(), is(true));
+        context.close();
+    }
+
+    private static LegacyBeanRegistryPostProcessor createPostProcessor() {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example.legacy")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"))
+                .prototypesFrom().methods(named("createInstance"))
+                .factory(LegacyFactoryBean.class).singletons(method -> method.getName().startsWith("get"))
+                .factory(LegacyFactoryBean.class).prototypes(method -> method.getName().startsWith("create"))
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+        return processor;
+    }
+
+    private static String write(LegacyBeanSource source) throws IOException {
+        StringWriter out = new StringWriter();
+        source.write("generated.LegacyBeans", out);
+        return out.toString();
+    }
+
+    private static String getClassPath() {
+        return Stream.of(GenericApplicationContext.class, BeanDefinition.class, Resource.class, LogFactory.class,
+                LegacySingletonByField.class)
+                .map(type -> new File(type.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath())
+                .distinct()
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    static class HiddenLegacy {
+
+        public static HiddenLegacy createHidden() {
+            return new HiddenLegacy();
+        }
+    }
+
+    public static class CheckedLegacy {
+
+        static final CheckedLegacy INSTANCE = new CheckedLegacy();
+
+        public static CheckedLegacy getCheckedInstance() throws IOException {
+            return INSTANCE;
+        }
+    }
+
+    public static class FailingLegacy {
+
+        public static FailingLegacy getCheckedInstance() throws Exception {
+            throw new IOException("failing legacy");
+        }
+    }
+}
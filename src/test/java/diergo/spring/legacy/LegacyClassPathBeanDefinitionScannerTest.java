@@ -0,0 +1,83 @@
+package diergo.spring.legacy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class LegacyClassPathBeanDefinitionScannerTest {
+
+    private ExecutorService executor;
+    private Set<Thread> matchingThreads;
+
+    @Test
+    public void parallelScanFindsCandidatesInOrderOfSerialScan() {
+        List<String> expected = findCandidates(createScanner(null));
+
+        List<String> actual = findCandidates(createScanner(executor));
+
+        assertThat(actual, is(not(empty())));
+        assertThat(actual, is(expected));
+        assertThat(matchingThreads, not(hasItem(Thread.currentThread())));
+    }
+
+    @Test
+    public void parallelScanRegistersInCallingThread() {
+        Thread caller = Thread.currentThread();
+        Set<Thread> customizingThreads = ConcurrentHashMap.newKeySet();
+        LegacyClassPathBeanDefinitionScanner tested = new LegacyClassPathBeanDefinitionScanner(
+                new SimpleBeanDefinitionRegistry(), new StandardEnvironment(),
+                bd -> customizingThreads.add(Thread.currentThread()), executor, new LegacyScanRecorder(), null, null);
+        tested.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+
+        assertThat(tested.scan("example.legacy") > 0, is(true));
+
+        assertThat(customizingThreads, contains(caller));
+    }
+
+    @BeforeEach
+    void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+        matchingThreads = ConcurrentHashMap.newKeySet();
+    }
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    private LegacyClassPathBeanDefinitionScanner createScanner(ExecutorService executor) {
+        LegacyClassPathBeanDefinitionScanner scanner = new LegacyClassPathBeanDefinitionScanner(
+                new SimpleBeanDefinitionRegistry(), new StandardEnvironment(), bd -> { }, executor,
+                new LegacyScanRecorder(), null, null);
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> {
+            if (executor != null) {
+                matchingThreads.add(Thread.currentThread());
+            }
+            return metadataReader.getClassMetadata().getClassName().contains("Legacy");
+        });
+        return scanner;
+    }
+
+    private static List<String> findCandidates(LegacyClassPathBeanDefinitionScanner scanner) {
+        return scanner.findCandidateComponents("example").stream()
+                .map(BeanDefinition::getBeanClassName)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,121 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacyPrototypeByStaticMethod;
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import example.spring.IndependentSpringBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.context.index.CandidateComponentsIndex;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static diergo.spring.legacy.LegacyComponentsIndex.CANDIDATE_STEREOTYPE;
+import static diergo.spring.legacy.LegacyComponentsIndex.PACKAGE_STEREOTYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LegacyComponentsIndexTest {
+
+    private static final String COMPONENT = "org.springframework.stereotype.Component";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void legacyCandidatesAreAddedToExistingIndex() throws IOException {
+        Path file = tempDir.resolve("spring.components");
+        Files.write(file, (IndependentSpringBean.class.getName() + '=' + COMPONENT + '\n').getBytes(UTF_8));
+
+        LegacyComponentsIndex.main(file.toString(), "example.spring.SpringConfig#legacySingletons");
+
+        List<String> actual = Files.readAllLines(file, UTF_8);
+        assertThat(actual, hasItems(
+                "example=" + PACKAGE_STEREOTYPE,
+                IndependentSpringBean.class.getName() + '=' + COMPONENT,
+                LegacySingletonByField.class.getName() + '=' + CANDIDATE_STEREOTYPE,
+                LegacySingletonByMethod.class.getName() + '=' + CANDIDATE_STEREOTYPE,
+                LegacyPrototypeByStaticMethod.class.getName() + '=' + CANDIDATE_STEREOTYPE));
+        assertThat(actual, not(hasItem(IndependentSpringBean.class.getName() + '=' + CANDIDATE_STEREOTYPE)));
+    }
+
+    @Test
+    public void candidatesOfCoveredPackagesAreListed() throws IOException {
+        CandidateComponentsIndex index = loadIndex(
+                "example.legacy=" + PACKAGE_STEREOTYPE,
+                LegacySingletonByMethod.class.getName() + '=' + CANDIDATE_STEREOTYPE + ',' + COMPONENT,
+                LegacySingletonByField.class.getName() + '=' + CANDIDATE_STEREOTYPE,
+                "example.legacyother.Other=" + CANDIDATE_STEREOTYPE,
+                IndependentSpringBean.class.getName() + '=' + COMPONENT);
+
+        assertThat(LegacyComponentsIndex.getCandidateTypes(index, "example.legacy"), contains(
+                LegacySingletonByField.class.getName(), LegacySingletonByMethod.class.getName()));
+        assertThat(LegacyComponentsIndex.getCandidateTypes(index, "example"), nullValue());
+        assertThat(LegacyComponentsIndex.getCandidateTypes(index, "example.spring"), nullValue());
+        assertThat(LegacyComponentsIndex.getCandidateTypes(index, "example.legacy.*"), nullValue());
+    }
+
+    @Test
+    public void scannerMatchesIndexedCandidatesOnly() throws IOException {
+        URLClassLoader classLoader = createClassLoader(
+                "example=" + PACKAGE_STEREOTYPE,
+                LegacySingletonByField.class.getName() + '=' + CANDIDATE_STEREOTYPE);
+        LegacyClassPathBeanDefinitionScanner scanner = new LegacyClassPathBeanDefinitionScanner(
+                new SimpleBeanDefinitionRegistry(), new StandardEnvironment(), bd -> { }, null,
+                new LegacyScanRecorder(), null, classLoader);
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+
+        List<String> actual = scanner.findCandidateComponents("example").stream()
+                .map(BeanDefinition::getBeanClassName)
+                .collect(toList());
+
+        assertThat(actual, contains(LegacySingletonByField.class.getName()));
+    }
+
+    @Test
+    public void scannerResolvesPlaceholdersOfPackagesListedByIndex() throws IOException {
+        URLClassLoader classLoader = createClassLoader(
+                "example=" + PACKAGE_STEREOTYPE,
+                LegacySingletonByField.class.getName() + '=' + CANDIDATE_STEREOTYPE);
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("legacy.package", "example")));
+        LegacyClassPathBeanDefinitionScanner scanner = new LegacyClassPathBeanDefinitionScanner(
+                new SimpleBeanDefinitionRegistry(), environment, bd -> { }, null,
+                new LegacyScanRecorder(), null, classLoader);
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+
+        List<String> actual = scanner.findCandidateComponents("${legacy.package}").stream()
+                .map(BeanDefinition::getBeanClassName)
+                .collect(toList());
+
+        assertThat(actual, contains(LegacySingletonByField.class.getName()));
+    }
+
+    private CandidateComponentsIndex loadIndex(String... lines) throws IOException {
+        return CandidateComponentsIndexLoader.loadIndex(createClassLoader(lines));
+    }
+
+    private URLClassLoader createClassLoader(String... lines) throws IOException {
+        Path metaInf = Files.createDirectories(tempDir.resolve("META-INF"));
+        Files.write(metaInf.resolve("spring.components"), String.join("\n", lines).getBytes(UTF_8));
+        return new URLClassLoader(new URL[] {tempDir.toUri().toURL()}, getClass().getClassLoader());
+    }
+}
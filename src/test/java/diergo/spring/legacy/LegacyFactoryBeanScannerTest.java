@@ -7,14 +7,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.FatalBeanException;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_PROTOTYPE;
@@ -26,7 +32,7 @@ class LegacyFactoryBeanScannerTest {
 
     @Test
     void missingFactoryBeanDefinitionRaisesFatalBeanException() {
-        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(() -> LegacyFactoryBean.class,
+        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(classLoader -> LegacyFactoryBean.class,
                 method -> true, SCOPE_SINGLETON);
 
         assertThrows(FatalBeanException.class, () -> tested.apply(registry));
@@ -34,7 +40,7 @@ class LegacyFactoryBeanScannerTest {
 
     @Test
     void singletonFactoryBeanDefinitionIsCreated() {
-        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(() -> LegacyFactoryBean.class,
+        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(classLoader -> LegacyFactoryBean.class,
                 method -> method.getName().startsWith("get"), SCOPE_SINGLETON);
         registerFactoryBean();
 
@@ -50,7 +56,7 @@ class LegacyFactoryBeanScannerTest {
 
     @Test
     void prototypeFactoryBeanDefinitionIsCreated() {
-        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(() -> LegacyFactoryBean.class,
+        LegacyFactoryBeanScanner tested = new LegacyFactoryBeanScanner(classLoader -> LegacyFactoryBean.class,
                 method -> method.getName().startsWith("create"), SCOPE_PROTOTYPE);
         registerFactoryBean();
 
@@ -64,6 +70,41 @@ class LegacyFactoryBeanScannerTest {
         assertThat(bd.getScope(), is(SCOPE_PROTOTYPE));
     }
 
+    @Test
+    void factoryBeanIsFoundByLookupSharedBetweenScanners() {
+        LegacyFactoryBeanScanner singletons = new LegacyFactoryBeanScanner(classLoader -> LegacyFactoryBean.class,
+                method -> method.getName().startsWith("get"), SCOPE_SINGLETON);
+        LegacyFactoryBeanScanner prototypes = new LegacyFactoryBeanScanner(classLoader -> LegacyFactoryBean.class,
+                method -> method.getName().startsWith("create"), SCOPE_PROTOTYPE);
+        registerFactoryBean();
+        BeanDefinitionLookup lookup = new BeanDefinitionLookup(registry);
+
+        List<BeanDefinition> actual = Stream.concat(singletons.apply(lookup), prototypes.apply(lookup))
+                .collect(toList());
+
+        assertThat(actual, hasSize(2));
+        assertThat(actual.get(0).getFactoryMethodName(), is("getSingleton"));
+        assertThat(actual.get(1).getFactoryMethodName(), is("createPrototype"));
+        actual.forEach(bd -> assertThat(bd.getFactoryBeanName(), is("factory")));
+    }
+
+    @Test
+    void chainedFactoriesAreRegisteredByPostProcessor() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("first", new RootBeanDefinition(FirstFactory.class));
+
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example.legacy")
+                .singletonsFrom().methods(named("getInstance"))
+                .factory(FirstFactory.class).singletons(named("getSecond"))
+                .factory(SecondFactory.class).singletons(named("getSingleton"))
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        assertThat(beanFactory.getBean(CreatedSingleton.class), instanceOf(CreatedSingleton.class));
+    }
+
     @BeforeEach
     void createRegistry() {
         registry = new SimpleBeanDefinitionRegistry();
@@ -72,4 +113,18 @@ class LegacyFactoryBeanScannerTest {
     private void registerFactoryBean() {
         registry.registerBeanDefinition("factory", new RootBeanDefinition(LegacyFactoryBean.class));
     }
+
+    public static class FirstFactory {
+
+        public SecondFactory getSecond() {
+            return new SecondFactory();
+        }
+    }
+
+    public static class SecondFactory {
+
+        public CreatedSingleton getSingleton() {
+            return new CreatedSingleton();
+        }
+    }
 }
\ No newline at end of file
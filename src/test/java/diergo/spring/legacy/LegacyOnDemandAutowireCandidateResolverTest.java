@@ -0,0 +1,221 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import example.spring.IndependentSpringBean;
+import example.spring.SpringBeanInjectedLegacy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.SimpleAutowireCandidateResolver;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.classreading.MetadataReader;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class LegacyOnDemandAutowireCandidateResolverTest {
+
+    private LegacyBeanRegistryPostProcessor processor;
+
+    @Test
+    public void nothingIsRegisteredUpFront() {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        assertThat(beanFactory.getBeanDefinitionNames(), arrayWithSize(0));
+        assertThat(beanFactory.getAutowireCandidateResolver(),
+                instanceOf(LegacyOnDemandAutowireCandidateResolver.class));
+    }
+
+    @Test
+    public void legacyBeanIsRegisteredOnDependencyResolution() {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+        RootBeanDefinition bd = new RootBeanDefinition(SpringBeanInjectedLegacy.class);
+        bd.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR);
+        beanFactory.registerBeanDefinition("injected", bd);
+
+        assertThat(beanFactory.getBean(SpringBeanInjectedLegacy.class), notNullValue());
+
+        assertThat(beanFactory.getBeanNamesForType(LegacySingletonByMethod.class), arrayWithSize(1));
+        assertThat(beanFactory.getBeanNamesForType(LegacySingletonByField.class), arrayWithSize(0));
+    }
+
+    @Test
+    public void typesNotMatchingAreNotRegistered() throws NoSuchFieldException {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        Object byField = beanFactory.resolveDependency(createDescriptor("byField"), null);
+        Object spring = beanFactory.resolveDependency(createDescriptor("spring"), null);
+
+        assertThat(byField, nullValue());
+        assertThat(spring, nullValue());
+        assertThat(beanFactory.getBeanDefinitionNames(), arrayWithSize(0));
+    }
+
+    @Test
+    public void registeredTypesAreInspectedOnce() throws NoSuchFieldException {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        Object first = beanFactory.resolveDependency(createDescriptor("byMethod"), null);
+        Object second = beanFactory.resolveDependency(createDescriptor("byMethod"), null);
+
+        assertThat(first, sameInstance(LegacySingletonByMethod.getInstance()));
+        assertThat(second, sameInstance(first));
+        assertThat(beanFactory.getBeanDefinitionNames(), arrayWithSize(1));
+    }
+
+    @Test
+    public void concurrentResolutionsRegisterOnce() throws NoSuchFieldException {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+        DependencyDescriptor descriptor = createDescriptor("byMethod");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Object> actual = IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(
+                            () -> beanFactory.resolveDependency(descriptor, null), executor))
+                    .collect(toList()).stream()
+                    .map(CompletableFuture::join)
+                    .collect(toList());
+
+            assertThat(actual, everyItem(sameInstance(LegacySingletonByMethod.getInstance())));
+            assertThat(beanFactory.getBeanDefinitionNames(), arrayWithSize(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reentrantResolutionOfSameTypeDoesNotWait() throws NoSuchFieldException {
+        DefaultListableBeanFactory beanFactory = createBeanFactory();
+        DependencyDescriptor descriptor = createDescriptor("byMethod");
+        LegacyBeanRegistryPostProcessor reentrant = new LegacyBeanRegistryPostProcessor(
+                emptyList(), emptyList(), null, 0, "example.legacy") {
+            @Override
+            boolean registerOnDemand(String className, BeanDefinitionRegistry registry) {
+                beanFactory.resolveDependency(descriptor, null);
+                return false;
+            }
+        };
+        LegacyOnDemandAutowireCandidateResolver.install(reentrant, beanFactory);
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        Object actual = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> beanFactory.resolveDependency(descriptor, null));
+
+        assertThat(actual, sameInstance(LegacySingletonByMethod.getInstance()));
+        assertThat(beanFactory.getBeanDefinitionNames(), arrayWithSize(1));
+    }
+
+    @Test
+    public void simpleResolverIsKeptAndPackagesAreScanned() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        assertThat(beanFactory.getAutowireCandidateResolver(), instanceOf(SimpleAutowireCandidateResolver.class));
+        assertThat(beanFactory.getBeanNamesForType(LegacySingletonByMethod.class), arrayWithSize(1));
+    }
+
+    @Test
+    public void resourceCacheOfContextIsNotFilledAfterRefresh() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        processor.setResourceLoader(context);
+        context.addBeanFactoryPostProcessor(processor);
+        context.refresh();
+
+        try {
+            assertThat(context.getAutowireCapableBeanFactory().createBean(SpringBeanInjectedLegacy.class),
+                    notNullValue());
+            assertThat(context.getResourceCache(MetadataReader.class).isEmpty(), is(true));
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void resolverIsKeptByAnnotationConfiguredContext() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.addBeanFactoryPostProcessor(processor);
+        context.register(SpringBeanInjectedLegacy.class);
+        context.refresh();
+
+        try {
+            assertThat(context.getBean(SpringBeanInjectedLegacy.class), notNullValue());
+            assertThat(context.getDefaultListableBeanFactory().getAutowireCandidateResolver(),
+                    instanceOf(LegacyOnDemandAutowireCandidateResolver.class));
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void registryWithoutResolverIsScanned() {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+
+        processor.postProcessBeanDefinitionRegistry(registry);
+
+        assertThat(Stream.of(registry.getBeanDefinitionNames())
+                .anyMatch(name -> LegacySingletonByMethod.class.getName()
+                        .equals(registry.getBeanDefinition(name).getBeanClassName())), is(true));
+    }
+
+    @BeforeEach
+    void createProcessor() {
+        processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example.legacy")
+                .singletonsFrom().methods(named("getInstance"))
+                .onDemand()
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+    }
+
+    private static DefaultListableBeanFactory createBeanFactory() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.setAutowireCandidateResolver(new ContextAnnotationAutowireCandidateResolver());
+        return beanFactory;
+    }
+
+    private static DependencyDescriptor createDescriptor(String field) throws NoSuchFieldException {
+        return new DependencyDescriptor(Consumer.class.getDeclaredField(field), false);
+    }
+
+    @SuppressWarnings("unused")
+    private static class Consumer {
+
+        private LegacySingletonByMethod byMethod;
+        private LegacySingletonByField byField;
+        private IndependentSpringBean spring;
+    }
+}
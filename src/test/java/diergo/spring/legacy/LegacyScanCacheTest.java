@@ -0,0 +1,245 @@
+package diergo.spring.legacy;
+
+import diergo.spring.legacy.LegacyScanReport.FilterStatistics;
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_SINGLETON;
+
+public class LegacyScanCacheTest {
+
+    private static final List<String> PACKAGES = Collections.singletonList("pkg");
+    private static final List<String> RULES = Collections.singletonList("singleton fields: named(INSTANCE)");
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private String root;
+    private List<Resource> resources;
+
+    @Test
+    public void missingFileResultsInEmptyCache() throws IOException {
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(false));
+        assertThat(tested.getReused(root), empty());
+    }
+
+    @Test
+    public void beansOfUnchangedRootAreReused() throws IOException {
+        LegacyScanCache written = LegacyScanCache.read(file, PACKAGES, RULES);
+        written.reuse(root, resources);
+        written.add(resources.get(0), createEntry("pkg.A"));
+        written.write();
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(true));
+        assertThat(tested.getReused(root).stream().map(LegacyBeanIndex.Entry::getClassName).collect(toList()),
+                contains("pkg.A"));
+        assertThat(tested.getReusedRoots(), is(1L));
+    }
+
+    @Test
+    public void beansOfReusedRootAreWrittenAgain() throws IOException {
+        LegacyScanCache first = LegacyScanCache.read(file, PACKAGES, RULES);
+        first.reuse(root, resources);
+        first.add(resources.get(0), createEntry("pkg.A"));
+        first.write();
+        LegacyScanCache second = LegacyScanCache.read(file, PACKAGES, RULES);
+        second.reuse(root, resources);
+        second.write();
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(true));
+        assertThat(tested.getReused(root), is(not(empty())));
+    }
+
+    @Test
+    public void changedRootIsScannedAgain() throws IOException {
+        LegacyScanCache written = LegacyScanCache.read(file, PACKAGES, RULES);
+        written.reuse(root, resources);
+        written.add(resources.get(0), createEntry("pkg.A"));
+        written.write();
+        resources.add(createClassFile("C"));
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(false));
+        assertThat(tested.getReused(root), empty());
+    }
+
+    @Test
+    public void changedRulesInvalidateCache() throws IOException {
+        LegacyScanCache written = LegacyScanCache.read(file, PACKAGES, RULES);
+        written.reuse(root, resources);
+        written.add(resources.get(0), createEntry("pkg.A"));
+        written.write();
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES,
+                Collections.singletonList("singleton fields: all"));
+
+        assertThat(tested.reuse(root, resources), is(false));
+        assertThat(tested.getReused(root), empty());
+    }
+
+    @Test
+    public void rootsOfOtherRulesAreKept() throws IOException {
+        LegacyScanCache written = LegacyScanCache.read(file, PACKAGES, RULES);
+        written.reuse(root, resources);
+        written.add(resources.get(0), createEntry("pkg.A"));
+        written.write();
+        LegacyScanCache other = LegacyScanCache.read(file, PACKAGES,
+                Collections.singletonList("singleton fields: all"));
+        other.reuse(root, resources);
+        other.add(resources.get(1), createEntry("pkg.B"));
+        other.write();
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(true));
+        assertThat(tested.getReused(root).stream().map(LegacyBeanIndex.Entry::getClassName).collect(toList()),
+                contains("pkg.A"));
+    }
+
+    @Test
+    public void corruptFileResultsInEmptyCache() throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] {0x4c, 0x53, 0x43, 0x31, 0x7f, 0x7f, 0x7f, 0x7f});
+
+        LegacyScanCache tested = LegacyScanCache.read(file, PACKAGES, RULES);
+
+        assertThat(tested.reuse(root, resources), is(false));
+    }
+
+    @Test
+    public void postProcessorReusesBeansOfCachedRoots() {
+        List<LegacyScanReport> reports = new ArrayList<>();
+        SimpleBeanDefinitionRegistry scanned = postProcess(reports);
+
+        SimpleBeanDefinitionRegistry actual = postProcess(reports);
+
+        assertThat(Files.isRegularFile(file), is(true));
+        assertThat(Arrays.asList(actual.getBeanDefinitionNames()),
+                containsInAnyOrder(scanned.getBeanDefinitionNames()));
+        assertThat(actual.getBeanDefinitionNames().length, is(greaterThan(1)));
+        assertThat(getBeanClassNames(actual), hasItems(LegacySingletonByField.class.getName(), LegacySingletonByMethod.class.getName()));
+        assertThat(reports.get(0).getFilters().stream().mapToLong(FilterStatistics::getInspected).sum(),
+                is(greaterThan(0L)));
+        assertThat(reports.get(1).getFilters().stream().mapToLong(FilterStatistics::getInspected).sum(), is(0L));
+    }
+
+    @Test
+    public void postProcessorKeepsOrderOfRoots() throws IOException {
+        Path first = new SyntheticLegacyClasses("synthetic.cached").singletonFields(2)
+                .compile(tempDir.resolve("first"));
+        Path second = new SyntheticLegacyClasses("synthetic.cached").singletonMethods(2)
+                .compile(tempDir.resolve("second"));
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] {first.toUri().toURL(), second.toUri().toURL()}, getClass().getClassLoader())) {
+            List<String> scanned = getSyntheticClassNames(postProcess(classLoader));
+            Path changed = second.resolve("synthetic").resolve("cached").resolve("SingletonMethod0.class");
+            Files.setLastModifiedTime(changed,
+                    FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() - 1000));
+
+            List<String> actual = getSyntheticClassNames(postProcess(classLoader));
+
+            assertThat(scanned.size(), is(4));
+            assertThat(actual, is(scanned));
+        }
+    }
+
+    @BeforeEach
+    void createRoot() throws IOException {
+        file = tempDir.resolve("cache").resolve("legacy-scan.cache");
+        Files.createDirectories(tempDir.resolve("pkg"));
+        resources = new ArrayList<>();
+        resources.add(createClassFile("A"));
+        resources.add(createClassFile("B"));
+        root = tempDir.resolve("pkg").toFile().toURI().toURL().toString();
+    }
+
+    private Resource createClassFile(String name) throws IOException {
+        Path classFile = tempDir.resolve("pkg").resolve(name + ".class");
+        Files.write(classFile, new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+        return new FileSystemResource(classFile.toFile());
+    }
+
+    private static LegacyBeanIndex.Entry createEntry(String className) {
+        return new LegacyBeanIndex.Entry(className, "INSTANCE", SCOPE_SINGLETON, true);
+    }
+
+    private DefaultListableBeanFactory postProcess(ClassLoader classLoader) {
+        LegacyBeanRegistryPostProcessor processor = createPostProcessor(createBuilder("synthetic.cached"));
+        processor.setBeanClassLoader(classLoader);
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        processor.postProcessBeanDefinitionRegistry(registry);
+        return registry;
+    }
+
+    private SimpleBeanDefinitionRegistry postProcess(List<LegacyScanReport> reports) {
+        SimpleBeanDefinitionRegistry registry = new SimpleBeanDefinitionRegistry();
+        createPostProcessor(createBuilder("example.legacy").reportingTo(reports::add))
+                .postProcessBeanDefinitionRegistry(registry);
+        return registry;
+    }
+
+    private LegacyBeanRegistryPostProcessorBuilder createBuilder(String basePackage) {
+        return legacyPackages(basePackage)
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"))
+                .scanCache(file);
+    }
+
+    private static LegacyBeanRegistryPostProcessor createPostProcessor(LegacyBeanRegistryPostProcessorBuilder builder) {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+        return processor;
+    }
+
+    private static List<String> getSyntheticClassNames(DefaultListableBeanFactory registry) {
+        return getBeanClassNames(registry).stream()
+                .filter(className -> className != null && className.startsWith("synthetic.cached."))
+                .collect(toList());
+    }
+
+    private static List<String> getBeanClassNames(BeanDefinitionRegistry registry) {
+        return Stream.of(registry.getBeanDefinitionNames())
+                .map(name -> registry.getBeanDefinition(name).getBeanClassName())
+                .collect(toList());
+    }
+}
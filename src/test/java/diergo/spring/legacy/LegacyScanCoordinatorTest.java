@@ -0,0 +1,151 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LegacyScanCoordinatorTest {
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    @Test
+    public void overlappingPackagesAreTraversedOnce() throws IOException {
+        LegacyScanCoordinator tested = new LegacyScanCoordinator(
+                Arrays.asList("example/legacy", "example", "example/spring"), Arrays.asList(1, 2, 3), resolver, null);
+
+        Set<URL> legacy = toUrls(tested.getResources("example/legacy"));
+        Set<URL> spring = toUrls(tested.getResources("example/spring"));
+        Set<URL> all = toUrls(tested.getResources("example"));
+
+        assertThat(tested.getTraversals(), is(1));
+        assertThat(legacy, not(empty()));
+        assertThat(legacy, is(toUrls(resolver.getResources("classpath*:example/legacy/**/*.class"))));
+        assertThat(spring, is(toUrls(resolver.getResources("classpath*:example/spring/**/*.class"))));
+        assertThat(all, is(toUrls(resolver.getResources("classpath*:example/**/*.class"))));
+    }
+
+    @Test
+    public void packagesNotCoveredAreTraversedOnRequest() throws IOException {
+        LegacyScanCoordinator tested = new LegacyScanCoordinator(
+                Collections.singletonList("example/legacy"), Collections.singletonList(1), resolver, null);
+
+        Set<URL> spring = toUrls(tested.getResources("example/spring"));
+
+        assertThat(tested.getTraversals(), is(1));
+        assertThat(spring, is(toUrls(resolver.getResources("classpath*:example/spring/**/*.class"))));
+    }
+
+    @Test
+    public void cachesAreClearedAfterLastParticipantFinished() {
+        Object first = new Object();
+        Object second = new Object();
+        LegacyScanCoordinator tested = new LegacyScanCoordinator(
+                Collections.singletonList("example"), Arrays.asList(first, second), resolver, null);
+        tested.getTypeCache().put("example.Test", Optional.empty());
+
+        tested.finish(first);
+        assertThat(tested.getTypeCache().isEmpty(), is(false));
+        tested.finish(second);
+        assertThat(tested.getTypeCache().isEmpty(), is(true));
+    }
+
+    @Test
+    public void cachesAreClearedWhenClosed() {
+        LegacyScanCoordinator tested = new LegacyScanCoordinator(
+                Collections.singletonList("example"), Arrays.asList(1, 2), resolver, null);
+        tested.getTypeCache().put("example.Test", Optional.empty());
+
+        tested.close();
+
+        assertThat(tested.isClosed(), is(true));
+        assertThat(tested.getTypeCache().isEmpty(), is(true));
+    }
+
+    @Test
+    public void coordinatedPostProcessorsRegisterTheirOwnBeans() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        LegacyBeanRegistryPostProcessor fields = createPostProcessor(legacyPackages("example")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .coordinatedScan());
+        LegacyBeanRegistryPostProcessor methods = createPostProcessor(legacyPackages("example.legacy")
+                .singletonsFrom().methods(named("getInstance"))
+                .coordinatedScan());
+        beanFactory.registerSingleton("fields", fields);
+        beanFactory.registerSingleton("methods", methods);
+
+        fields.postProcessBeanDefinitionRegistry(beanFactory);
+        LegacyScanCoordinator coordinator = methods.getCoordinator();
+        methods.postProcessBeanDefinitionRegistry(beanFactory);
+
+        assertThat(fields.getCoordinator(), nullValue());
+        assertThat(methods.getCoordinator(), nullValue());
+        assertThat(coordinator.getTraversals(), is(1));
+        assertThat(Stream.of(beanFactory.getBeanDefinitionNames())
+                .map(name -> beanFactory.getBeanDefinition(name).getBeanClassName())
+                .collect(toList()), hasItems(LegacySingletonByField.class.getName(),
+                LegacySingletonByMethod.class.getName()));
+    }
+
+    @Test
+    public void coordinatorIsClosedWhenBeanFactoryIsPostProcessed() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        LegacyBeanRegistryPostProcessor fields = createPostProcessor(legacyPackages("example")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .coordinatedScan());
+        LegacyBeanRegistryPostProcessor methods = createPostProcessor(legacyPackages("example.legacy")
+                .singletonsFrom().methods(named("getInstance"))
+                .coordinatedScan());
+        beanFactory.registerSingleton("fields", fields);
+        beanFactory.registerSingleton("methods", methods);
+        fields.postProcessBeanDefinitionRegistry(beanFactory);
+        LegacyScanCoordinator coordinator = methods.getCoordinator();
+
+        methods.postProcessBeanFactory(beanFactory);
+
+        assertThat(methods.getCoordinator(), nullValue());
+        assertThat(coordinator.isClosed(), is(true));
+        assertThat(coordinator.getTypeCache().isEmpty(), is(true));
+    }
+
+    private static LegacyBeanRegistryPostProcessor createPostProcessor(LegacyBeanRegistryPostProcessorBuilder builder) {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+        return processor;
+    }
+
+    private static Set<URL> toUrls(Resource[] resources) {
+        return Stream.of(resources)
+                .map(resource -> {
+                    try {
+                        return resource.getURL();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(toSet());
+    }
+}
@@ -0,0 +1,67 @@
+package diergo.spring.legacy;
+
+import diergo.spring.legacy.LegacyScanReport.FilterStatistics;
+import diergo.spring.legacy.LegacyScanReport.Phase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.SimpleBeanDefinitionRegistry;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class LegacyScanReportTest {
+
+    @Test
+    public void scanIsReported() {
+        List<LegacyScanReport> reports = new ArrayList<>();
+
+        postProcess(createBuilder().reportingTo(reports::add));
+
+        assertThat(reports, hasSize(1));
+        LegacyScanReport actual = reports.get(0);
+        assertThat(actual.getBasePackages(), contains("example"));
+        assertThat(actual.isIndexed(), is(false));
+        assertThat(actual.getRegistered(), is(greaterThan(1)));
+        assertThat(actual.getDuration(Phase.RESOURCES), is(greaterThan(Duration.ZERO)));
+        assertThat(actual.getDuration(Phase.MATCHING), is(greaterThan(Duration.ZERO)));
+        assertThat(actual.getTotalDuration(), is(greaterThan(actual.getDuration(Phase.MATCHING))));
+    }
+
+    @Test
+    public void filterStatisticsAreReported() {
+        List<LegacyScanReport> reports = new ArrayList<>();
+
+        postProcess(createBuilder().reportingTo(reports::add));
+
+        List<FilterStatistics> actual = reports.get(0).getFilters();
+        assertThat(actual.stream().map(FilterStatistics::getName).collect(toList()),
+                contains("1. singleton fields", "2. singleton methods"));
+        actual.forEach(filter -> {
+            assertThat(filter.getMatched(), is(greaterThan(0L)));
+            assertThat(filter.getRejected(), is(greaterThan(0L)));
+            assertThat(filter.getInspected(), is(filter.getMatched() + filter.getRejected()));
+        });
+    }
+
+    private static LegacyBeanRegistryPostProcessorBuilder createBuilder() {
+        return legacyPackages("example")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"));
+    }
+
+    private static void postProcess(LegacyBeanRegistryPostProcessorBuilder builder) {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(new StandardEnvironment());
+        processor.postProcessBeanDefinitionRegistry(new SimpleBeanDefinitionRegistry());
+    }
+}
@@ -2,14 +2,24 @@ package diergo.spring.legacy;
 
 import example.legacy.LegacySingletonByField;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.annotation.ScannedGenericBeanDefinition;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.beans.factory.config.ConfigurableBeanFactory.SCOPE_SINGLETON;
 
 public class LegacySingletonFieldFilterTest {
@@ -44,6 +54,25 @@ public class LegacySingletonFieldFilterTest {
         assertThat(actual.getInstanceSupplier().get(), isA(LegacySingletonByField.class));
     }
 
+    @Test
+    public void instanceSupplierOfFieldKnownByNameReturnsTheFieldValue() {
+        RootBeanDefinition actual = new RootBeanDefinition(LegacySingletonByField.class.getName());
+
+        LegacySingletonFieldFilter.customizeBeanDefinition("INSTANCE", actual, null);
+
+        assertThat(actual.getInstanceSupplier().get(), sameInstance(LegacySingletonByField.INSTANCE));
+        assertThat(actual.getInstanceSupplier().get(), sameInstance(LegacySingletonByField.INSTANCE));
+    }
+
+    @Test
+    public void instanceSupplierOfMissingFieldKnownByNameFails() {
+        RootBeanDefinition actual = new RootBeanDefinition(LegacySingletonByField.class.getName());
+
+        LegacySingletonFieldFilter.customizeBeanDefinition("instance", actual, null);
+
+        assertThrows(BeanCreationException.class, () -> actual.getInstanceSupplier().get());
+    }
+
     @Test
     public void prototypeWithSuccessfulCheckMatches() {
         assertThat(matchTypeFilter(LegacySingletonByField.class,
@@ -62,6 +91,49 @@ public class LegacySingletonFieldFilterTest {
                 is(false));
     }
 
+    @Test
+    public void classFileWithStaticFieldOfOwnTypeMatches() throws IOException {
+        assertThat(matchClassFile(LegacySingletonByField.class, new LegacySingletonFieldFilter(field -> true)), is(true));
+    }
+
+    @Test
+    public void classFileWithoutStaticFieldOfOwnTypeDoesNotMatch() throws IOException {
+        assertThat(matchClassFile(NonSingletonBean.class, new LegacySingletonFieldFilter(field -> true)), is(false));
+    }
+
+    @Test
+    public void accessIsResolvedOnlyOnceDuringScan() {
+        AtomicInteger checks = new AtomicInteger();
+        LegacySingletonFieldFilter tested = new LegacySingletonFieldFilter(field -> checks.incrementAndGet() > 0);
+        tested.startScan(new ConcurrentHashMap<>());
+        ScannedGenericBeanDefinition bd = new ScannedGenericBeanDefinition(new TestMetadataReader(LegacySingletonByField.class));
+
+        assertThat(matchTypeFilter(LegacySingletonByField.class, tested), is(true));
+        int checked = checks.get();
+        assertThat(tested.supports(bd), is(true));
+        tested.customize(bd);
+        assertThat(checks.get(), is(checked));
+
+        tested.finishScan();
+        assertThat(tested.supports(bd), is(true));
+        assertThat(checks.get(), is(greaterThan(checked)));
+    }
+
+    @Test
+    public void missingTypesAreCachedDuringScan() {
+        Map<String, Optional<Class<?>>> types = new ConcurrentHashMap<>();
+        LegacySingletonFieldFilter tested = new LegacySingletonFieldFilter(field -> true);
+        tested.startScan(types);
+
+        assertThat(tested.supports(new RootBeanDefinition("example.legacy.Missing")), is(false));
+
+        assertThat(types.get("example.legacy.Missing"), is(Optional.empty()));
+    }
+
+    private boolean matchClassFile(Class<?> type, CustomizingTypeFilter<?> filter) throws IOException {
+        return filter.matchClassFile(EXAMPLE_FACTORY.getMetadataReader(type.getName()), EXAMPLE_FACTORY);
+    }
+
     private boolean matchTypeFilter(Class<?> type, CustomizingTypeFilter<?> filter) {
         return filter.match(new TestMetadataReader(type), EXAMPLE_FACTORY);
     }
@@ -0,0 +1,172 @@
+package diergo.spring.legacy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class LegacySingletonPatternFilterTest {
+
+    private final LegacySingletonPatternFilter tested = new LegacySingletonPatternFilter();
+    private final MetadataReaderFactory metadataReaderFactory = new SimpleMetadataReaderFactory();
+
+    @Test
+    public void visibleFieldAssignedByStaticInitializerIsDetected() throws IOException {
+        assertThat(match(EagerFieldSingleton.class), is(true));
+        LegacyBeanIndex.Entry actual = tested.describe(EagerFieldSingleton.class.getName()).get();
+        assertThat(actual.isField(), is(true));
+        assertThat(actual.getMember(), is("INSTANCE"));
+    }
+
+    @Test
+    public void methodReturningFieldAssignedByStaticInitializerIsDetected() throws IOException {
+        assertThat(match(EagerMethodSingleton.class), is(true));
+        LegacyBeanIndex.Entry actual = tested.describe(EagerMethodSingleton.class.getName()).get();
+        assertThat(actual.isField(), is(false));
+        assertThat(actual.getMember(), is("getInstance"));
+    }
+
+    @Test
+    public void methodAssigningFieldLazilyIsDetected() throws IOException {
+        assertThat(match(LazyMethodSingleton.class), is(true));
+        assertThat(tested.describe(LazyMethodSingleton.class.getName()).get().getMember(), is("getInstance"));
+    }
+
+    @Test
+    public void classWithVisibleConstructorIsNoSingleton() throws IOException {
+        assertThat(match(VisibleConstructor.class), is(false));
+    }
+
+    @Test
+    public void classWithSeveralInstancesIsNoSingleton() throws IOException {
+        assertThat(match(SeveralInstances.class), is(false));
+    }
+
+    @Test
+    public void enumIsNoSingleton() throws IOException {
+        assertThat(match(SingleEnum.class), is(false));
+    }
+
+    @Test
+    public void fieldSingletonIsCustomizedByName() {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+        bd.setBeanClassName(EagerFieldSingleton.class.getName());
+
+        tested.customize(bd);
+
+        assertThat(bd.getScope(), is(BeanDefinition.SCOPE_SINGLETON));
+        assertThat(bd.isLazyInit(), is(true));
+        assertThat(bd.getInstanceSupplier().get(), sameInstance(EagerFieldSingleton.INSTANCE));
+    }
+
+    @Test
+    public void postProcessorRegistersSingletonsDetected() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        LegacyBeanRegistryPostProcessor processor = createPostProcessor();
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        List<String> actual = Stream.of(beanFactory.getBeanDefinitionNames())
+                .map(name -> beanFactory.getBeanDefinition(name).getBeanClassName())
+                .collect(toList());
+        assertThat(actual, hasItems(EagerFieldSingleton.class.getName(), EagerMethodSingleton.class.getName(),
+                LazyMethodSingleton.class.getName()));
+        assertThat(actual, not(hasItem(VisibleConstructor.class.getName())));
+        assertThat(beanFactory.getBean(EagerMethodSingleton.class), sameInstance(EagerMethodSingleton.getInstance()));
+        assertThat(beanFactory.getBean(LazyMethodSingleton.class), sameInstance(LazyMethodSingleton.getInstance()));
+    }
+
+    @Test
+    public void indexDescribesSingletonsDetected() {
+        LegacyBeanRegistryPostProcessor processor = createPostProcessor();
+
+        List<String> actual = processor.createIndex().getEntries("diergo.spring.legacy").stream()
+                .map(LegacyBeanIndex.Entry::getClassName)
+                .collect(toList());
+
+        assertThat(actual, hasItems(EagerFieldSingleton.class.getName(), LazyMethodSingleton.class.getName()));
+        assertThat(tested.describe(SeveralInstances.class.getName()), is(Optional.empty()));
+    }
+
+    private static LegacyBeanRegistryPostProcessor createPostProcessor() {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("diergo.spring.legacy")
+                .singletonsFrom().singletonPattern()
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+        return processor;
+    }
+
+    private boolean match(Class<?> type) throws IOException {
+        return tested.match(metadataReaderFactory.getMetadataReader(type.getName()), metadataReaderFactory);
+    }
+
+    static class EagerFieldSingleton {
+
+        public static final EagerFieldSingleton INSTANCE = new EagerFieldSingleton();
+
+        private EagerFieldSingleton() {
+        }
+    }
+
+    static class EagerMethodSingleton {
+
+        private static final EagerMethodSingleton INSTANCE = new EagerMethodSingleton();
+
+        private EagerMethodSingleton() {
+        }
+
+        public static EagerMethodSingleton getInstance() {
+            return INSTANCE;
+        }
+    }
+
+    static class LazyMethodSingleton {
+
+        private static LazyMethodSingleton instance;
+
+        private LazyMethodSingleton() {
+        }
+
+        public static synchronized LazyMethodSingleton getInstance() {
+            if (instance == null) {
+                instance = new LazyMethodSingleton();
+            }
+            return instance;
+        }
+    }
+
+    static class VisibleConstructor {
+
+        public static final VisibleConstructor INSTANCE = new VisibleConstructor();
+    }
+
+    static class SeveralInstances {
+
+        public static final SeveralInstances FIRST = new SeveralInstances();
+        public static final SeveralInstances SECOND = new SeveralInstances();
+
+        private SeveralInstances() {
+        }
+    }
+
+    enum SingleEnum {
+        INSTANCE
+    }
+}
@@ -0,0 +1,158 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacySingletonByField;
+import example.legacy.LegacySingletonByMethod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LegacySingletonWarmUpTest {
+
+    private GenericApplicationContext context;
+
+    @Test
+    public void lazySingletonsAreCreatedAfterRefresh() throws Exception {
+        addPostProcessor(createBuilder().warmUp(2, Duration.ofSeconds(10)));
+
+        context.refresh();
+
+        assertThat(getWarmedUp().get(10, TimeUnit.SECONDS), is(3));
+        assertThat(isCreated(LegacySingletonByField.class), is(true));
+        assertThat(isCreated(LegacySingletonByMethod.class), is(true));
+    }
+
+    @Test
+    public void lazySingletonsAreLeftLazyWithoutWarmUp() {
+        addPostProcessor(createBuilder());
+
+        context.refresh();
+
+        assertThat(isCreated(LegacySingletonByField.class), is(false));
+        assertThat(isCreated(LegacySingletonByMethod.class), is(false));
+    }
+
+    @Test
+    public void lazySingletonsAreLeftLazyAfterDeadline() throws Exception {
+        addPostProcessor(createBuilder().warmUp(1, Duration.ZERO));
+
+        context.refresh();
+
+        assertThat(getWarmedUp().get(10, TimeUnit.SECONDS), is(0));
+        assertThat(isCreated(LegacySingletonByField.class), is(false));
+    }
+
+    @Test
+    public void singletonsCreatedAlreadyAreSkipped() throws Exception {
+        addPostProcessor(createBuilder());
+        context.refresh();
+        context.getBean(LegacySingletonByField.class);
+        LegacySingletonWarmUp tested = new LegacySingletonWarmUp(asList(getBeanName(LegacySingletonByField.class),
+                getBeanName(LegacySingletonByMethod.class)), 1, Duration.ofSeconds(10));
+        tested.setBeanFactory(context.getBeanFactory());
+
+        assertThat(tested.warmUp().get(10, TimeUnit.SECONDS), is(1));
+    }
+
+    @Test
+    public void refreshDoesNotWaitForWarmUp() throws Exception {
+        BlockingSingleton.release = new CountDownLatch(1);
+        addPostProcessor(legacyPackages("diergo.spring.legacy")
+                .singletonsFrom().methods(named("getBlockingInstance"))
+                .warmUp(1, Duration.ofSeconds(10)));
+
+        context.refresh();
+
+        assertThat(getWarmedUp().isDone(), is(false));
+        BlockingSingleton.release.countDown();
+        assertThat(getWarmedUp().get(10, TimeUnit.SECONDS), is(1));
+    }
+
+    @Test
+    public void dependenciesAreWarmedUpFirst() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("first", createLazySingleton("second"));
+        beanFactory.registerBeanDefinition("second", createLazySingleton("third"));
+        beanFactory.registerBeanDefinition("third", createLazySingleton());
+        LegacySingletonWarmUp tested = new LegacySingletonWarmUp(asList("first", "second", "third"), 1,
+                Duration.ofSeconds(10));
+        tested.setBeanFactory(beanFactory);
+
+        assertThat(tested.getCandidates(), contains("third", "second", "first"));
+    }
+
+    @Test
+    public void warmUpNeedsThreads() {
+        assertThrows(IllegalArgumentException.class, () -> createBuilder().warmUp(0, Duration.ofSeconds(1)));
+    }
+
+    @BeforeEach
+    void createContext() {
+        context = new GenericApplicationContext();
+    }
+
+    @AfterEach
+    void closeContext() {
+        context.close();
+    }
+
+    private static LegacyBeanRegistryPostProcessorBuilder createBuilder() {
+        return legacyPackages("example.legacy")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .singletonsFrom().methods(named("getInstance"));
+    }
+
+    private void addPostProcessor(LegacyBeanRegistryPostProcessorBuilder builder) {
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) builder.build();
+        processor.setEnvironment(context.getEnvironment());
+        context.addBeanFactoryPostProcessor(processor);
+    }
+
+    private static RootBeanDefinition createLazySingleton(String... dependsOn) {
+        RootBeanDefinition bd = new RootBeanDefinition(Object.class);
+        bd.setLazyInit(true);
+        bd.setDependsOn(dependsOn);
+        return bd;
+    }
+
+    private CompletableFuture<Integer> getWarmedUp() {
+        return context.getBean(LegacySingletonWarmUp.class).getWarmedUp();
+    }
+
+    private boolean isCreated(Class<?> type) {
+        return context.getBeanFactory().containsSingleton(getBeanName(type));
+    }
+
+    private String getBeanName(Class<?> type) {
+        String[] names = context.getBeanFactory().getBeanNamesForType(type, true, false);
+        assertThat(names.length, is(1));
+        return names[0];
+    }
+
+    public static class BlockingSingleton {
+
+        static CountDownLatch release;
+
+        private static final BlockingSingleton INSTANCE = new BlockingSingleton();
+
+        public static BlockingSingleton getBlockingInstance() throws InterruptedException {
+            release.await(10, TimeUnit.SECONDS);
+            return INSTANCE;
+        }
+    }
+}
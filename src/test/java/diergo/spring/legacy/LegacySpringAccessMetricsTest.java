@@ -0,0 +1,101 @@
+package diergo.spring.legacy;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class LegacySpringAccessMetricsTest {
+
+    private final LegacySpringAccessMetrics tested = new LegacySpringAccessMetrics();
+
+    @Test
+    public void beansGotAreCountedByType() {
+        tested.beanGot(String.class, false, 10);
+        tested.beanGot(String.class, true, 20);
+        tested.beanGot(Integer.class, false, 30);
+
+        LegacySpringAccessMetrics.TypeMetrics actual = tested.getTypes().get(String.class);
+        assertThat(actual.getBeanAccess().getCount(), is(2L));
+        assertThat(actual.getBeanAccess().getTotal(), is(Duration.ofNanos(30)));
+        assertThat(actual.getProxiedAccess(), is(1L));
+        assertThat(tested.getTypes().get(Integer.class).getBeanAccess().getCount(), is(1L));
+    }
+
+    @Test
+    public void hottestTypesIncludeProxyCalls() {
+        tested.beanGot(String.class, false, 10);
+        tested.beanGot(Integer.class, true, 10);
+        tested.targetResolved(Integer.class, 10);
+        tested.targetResolved(Integer.class, 10);
+        tested.beanGot(Long.class, false, 10);
+        tested.beanGot(Long.class, false, 10);
+
+        List<Class<?>> actual = tested.getHottest(2).stream()
+                .map(LegacySpringAccessMetrics.TypeMetrics::getType)
+                .collect(toList());
+
+        assertThat(actual, contains(Integer.class, Long.class));
+    }
+
+    @Test
+    public void proxyCreationsAreCounted() {
+        tested.proxyCreated(String.class);
+
+        assertThat(tested.getTypes().get(String.class).getProxyCreations(), is(1L));
+    }
+
+    @Test
+    public void typesOfReleasedClassLoaderAreDropped() {
+        tested.beanGot(String.class, false, 10);
+        tested.beanGot(getClass(), false, 10);
+
+        tested.classLoaderReleased(getClass().getClassLoader());
+
+        assertThat(tested.getTypes().keySet(), contains(String.class));
+    }
+
+    @Test
+    public void histogramReportsUpperBoundOfPercentileBucket() {
+        for (int i = 0; i < 99; ++i) {
+            tested.targetResolved(String.class, 100);
+        }
+        tested.targetResolved(String.class, 5000);
+
+        LegacySpringAccessMetrics.Histogram actual = tested.getTypes().get(String.class).getTargetResolution();
+
+        assertThat(actual.getPercentile(50), is(Duration.ofNanos(127)));
+        assertThat(actual.getPercentile(99), is(Duration.ofNanos(127)));
+        assertThat(actual.getPercentile(100), is(Duration.ofNanos(8191)));
+        assertThat(actual.getMean(), is(Duration.ofNanos(149)));
+    }
+
+    @Test
+    public void histogramAcceptsExtremeLatencies() {
+        tested.targetResolved(String.class, 0);
+        tested.targetResolved(String.class, -1);
+        tested.targetResolved(String.class, Long.MAX_VALUE);
+
+        LegacySpringAccessMetrics.Histogram actual = tested.getTypes().get(String.class).getTargetResolution();
+
+        assertThat(actual.getCount(), is(3L));
+        assertThat(actual.getPercentile(50), is(Duration.ZERO));
+        assertThat(actual.getPercentile(100), is(Duration.ofNanos(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void emptyHistogramHasNoLatencies() {
+        tested.proxyCreated(String.class);
+
+        LegacySpringAccessMetrics.Histogram actual = tested.getTypes().get(String.class).getBeanAccess();
+
+        assertThat(actual.getCount(), is(0L));
+        assertThat(actual.getMean(), is(Duration.ZERO));
+        assertThat(actual.getPercentile(99), is(Duration.ZERO));
+    }
+}
@@ -6,10 +6,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.FatalBeanException;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContextException;
 import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.ResolvableType;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class LegacySpringAccessTest {
@@ -39,6 +52,50 @@ public class LegacySpringAccessTest {
         actual.doIt();
     }
 
+    @Test
+    public void springBeanProxyIsReusedBeforeApplicationContextAvailable() {
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(LegacySpringAccess.getSpringBean(TestBean.class), sameInstance(actual));
+    }
+
+    @Test
+    public void springBeanProxyDelegatesToCurrentApplicationContext() {
+        LegacySpringAccess tested = new LegacySpringAccess();
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+        tested.setBeanFactory(beanFactory);
+        actual.doIt();
+        TestBean first = beanFactory.getBean(TestBean.class);
+        tested.destroy();
+        createSpringContextWithTestBean();
+
+        tested.setBeanFactory(beanFactory);
+        actual.doIt();
+
+        assertThat(first.calls, is(1));
+        assertThat(beanFactory.getBean(TestBean.class).calls, is(1));
+    }
+
+    @Test
+    public void springBeanProxiesAreDroppedWithLastContextOfTheirClassLoader() {
+        TestBean proxy = LegacySpringAccess.getSpringBean(TestBean.class);
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(createBeanFactory(TestBean.class.getClassLoader()));
+
+        tested.destroy();
+
+        assertThat(LegacySpringAccess.getSpringBean(TestBean.class), not(sameInstance(proxy)));
+    }
+
+    @Test
+    public void springBeanProxiesAreDroppedOnReset() {
+        TestBean proxy = LegacySpringAccess.getSpringBean(TestBean.class);
+
+        LegacySpringAccess.reset();
+
+        assertThat(LegacySpringAccess.getSpringBean(TestBean.class), not(sameInstance(proxy)));
+    }
+
     @Test
     public void springBeanIsRetrievedFromApplicationContextIfAvailable() {
         new LegacySpringAccess().setBeanFactory(beanFactory);
@@ -48,6 +105,233 @@ public class LegacySpringAccessTest {
         assertThat(AopUtils.isAopProxy(actual), is(false));
     }
 
+    @Test
+    public void singletonIsRetrievedFromCache() {
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(LegacySpringAccess.getSpringBean(TestBean.class), sameInstance(actual));
+        assertThat(actual, sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void prototypeIsRetrievedOnEachCall() {
+        StaticApplicationContext inner = new StaticApplicationContext();
+        RootBeanDefinition prototype = new RootBeanDefinition(TestBean.class);
+        prototype.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        inner.registerBeanDefinition("testBean", prototype);
+        new LegacySpringAccess().setBeanFactory(inner.getBeanFactory());
+
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(LegacySpringAccess.getSpringBean(TestBean.class), not(sameInstance(actual)));
+    }
+
+    @Test
+    public void cachedSingletonsAreDroppedWithBeanFactory() {
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(beanFactory);
+        TestBean cached = LegacySpringAccess.getSpringBean(TestBean.class);
+        tested.destroy();
+        createSpringContextWithTestBean();
+
+        tested.setBeanFactory(beanFactory);
+
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+        assertThat(actual, not(sameInstance(cached)));
+        assertThat(actual, sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void springBeanIsRetrievedFromContextOfThreadContextClassLoader() {
+        ClassLoader first = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        ClassLoader second = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        BeanFactory firstBeanFactory = createBeanFactory(first);
+        BeanFactory secondBeanFactory = createBeanFactory(second);
+        new LegacySpringAccess().setBeanFactory(firstBeanFactory);
+        new LegacySpringAccess().setBeanFactory(secondBeanFactory);
+
+        assertThat(getSpringBeanUsing(new URLClassLoader(new URL[0], second)),
+                sameInstance(secondBeanFactory.getBean(TestBean.class)));
+        assertThat(getSpringBeanUsing(first), sameInstance(firstBeanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void springBeanIsRetrievedFromFirstContextForUnknownClassLoader() {
+        BeanFactory second = createBeanFactory(new URLClassLoader(new URL[0], getClass().getClassLoader()));
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+        new LegacySpringAccess().setBeanFactory(second);
+
+        assertThat(getSpringBeanUsing(new URLClassLoader(new URL[0], null)),
+                sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void springBeanIsRetrievedFromContextById() {
+        StaticApplicationContext other = new StaticApplicationContext();
+        other.setId("other");
+        other.registerSingleton("testBean", TestBean.class);
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(other.getBeanFactory());
+        tested.setApplicationContext(other);
+
+        TestBean actual = LegacySpringAccess.getSpringBean("other", TestBean.class);
+
+        assertThat(actual, sameInstance(other.getBean(TestBean.class)));
+        assertThat(actual, not(sameInstance(beanFactory.getBean(TestBean.class))));
+    }
+
+    @Test
+    public void springBeanOfUnknownContextIdCannotBeRetrieved() {
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        assertThrows(ApplicationContextException.class,
+                () -> LegacySpringAccess.getSpringBean("unknown", TestBean.class));
+    }
+
+    @Test
+    public void destroyRemovesOwnContextOnly() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(createBeanFactory(classLoader));
+
+        tested.destroy();
+
+        assertThat(getSpringBeanUsing(classLoader), sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void asyncSpringBeanIsCompletedImmediatelyIfApplicationContextAvailable() {
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        CompletableFuture<TestBean> actual = LegacySpringAccess.getSpringBeanAsync(TestBean.class);
+
+        assertThat(actual.isDone(), is(true));
+        assertThat(actual.join(), sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void asyncSpringBeanIsCompletedWhenApplicationContextAppeared() throws Exception {
+        CompletableFuture<TestBean> actual = LegacySpringAccess.getSpringBeanAsync(TestBean.class);
+        assertThat(actual.isDone(), is(false));
+
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        assertThat(actual.get(10, TimeUnit.SECONDS), sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void asyncSpringBeanWaitsAgainAfterApplicationContextRemoved() {
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(beanFactory);
+        tested.destroy();
+
+        CompletableFuture<TestBean> actual = LegacySpringAccess.getSpringBeanAsync(TestBean.class);
+
+        assertThat(actual.isDone(), is(false));
+    }
+
+    @Test
+    public void springBeanIsWaitedForUntilApplicationContextAppeared() throws Exception {
+        CompletableFuture<TestBean> actual = CompletableFuture.supplyAsync(
+                () -> LegacySpringAccess.getSpringBean(TestBean.class, Duration.ofSeconds(10)));
+
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        assertThat(actual.get(10, TimeUnit.SECONDS), sameInstance(beanFactory.getBean(TestBean.class)));
+    }
+
+    @Test
+    public void springBeanWaitedForTimesOutWithoutApplicationContext() {
+        assertThrows(ApplicationContextException.class,
+                () -> LegacySpringAccess.getSpringBean(TestBean.class, Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void listenerIsNotifiedAboutBeansGot() {
+        LegacySpringAccessMetrics metrics = new LegacySpringAccessMetrics();
+        LegacySpringAccess.setListener(metrics);
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        LegacySpringAccess.getSpringBean(TestBean.class);
+        LegacySpringAccess.getSpringBean(TestBean.class);
+
+        LegacySpringAccessMetrics.TypeMetrics actual = metrics.getTypes().get(TestBean.class);
+        assertThat(actual.getBeanAccess().getCount(), is(2L));
+        assertThat(actual.getProxiedAccess(), is(0L));
+    }
+
+    @Test
+    public void listenerIsNotifiedAboutProxiesAndTargetsResolved() {
+        LegacySpringAccessMetrics metrics = new LegacySpringAccessMetrics();
+        LegacySpringAccess.setListener(metrics);
+        ListenedBean actual = LegacySpringAccess.getSpringBean(ListenedBean.class);
+        LegacySpringAccess.getSpringBean(ListenedBean.class);
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("listenedBean", ListenedBean.class);
+        new LegacySpringAccess().setBeanFactory(context.getBeanFactory());
+
+        actual.doIt();
+
+        LegacySpringAccessMetrics.TypeMetrics metricsOfType = metrics.getTypes().get(ListenedBean.class);
+        assertThat(metricsOfType.getProxiedAccess(), is(2L));
+        assertThat(metricsOfType.getProxyCreations(), is(1L));
+        assertThat(metricsOfType.getTargetResolution().getCount(), is(1L));
+    }
+
+    @Test
+    public void listenerIsNotCalledAfterRemoval() {
+        LegacySpringAccessMetrics metrics = new LegacySpringAccessMetrics();
+        LegacySpringAccess.setListener(metrics);
+        LegacySpringAccess.setListener(null);
+        new LegacySpringAccess().setBeanFactory(beanFactory);
+
+        LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(metrics.getTypes().isEmpty(), is(true));
+    }
+
+    @Test
+    public void beanNamesAreResolvedOnceAfterConfigurationFrozen() {
+        CountingBeanFactory counting = createCountingBeanFactory();
+        counting.freezeConfiguration();
+        new LegacySpringAccess().setBeanFactory(counting);
+
+        TestBean first = LegacySpringAccess.getSpringBean(TestBean.class);
+        TestBean second = LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(counting.lookups, is(1));
+    }
+
+    @Test
+    public void beanNamesAreResolvedOnEachCallBeforeConfigurationFrozen() {
+        CountingBeanFactory counting = createCountingBeanFactory();
+        new LegacySpringAccess().setBeanFactory(counting);
+
+        LegacySpringAccess.getSpringBean(TestBean.class);
+        LegacySpringAccess.getSpringBean(TestBean.class);
+
+        assertThat(counting.lookups, is(2));
+    }
+
+    @Test
+    public void beanNamesOfProxiesAreResolvedAfterSingletonsInstantiated() {
+        TestBean actual = LegacySpringAccess.getSpringBean(TestBean.class);
+        CountingBeanFactory counting = createCountingBeanFactory();
+        counting.freezeConfiguration();
+        LegacySpringAccess tested = new LegacySpringAccess();
+        tested.setBeanFactory(counting);
+
+        tested.afterSingletonsInstantiated();
+        actual.doIt();
+
+        assertThat(counting.lookups, is(0));
+    }
+
     @BeforeEach
     void createSpringContextWithTestBean() {
         StaticApplicationContext inner = new StaticApplicationContext();
@@ -57,11 +341,59 @@ public class LegacySpringAccessTest {
 
     @AfterEach
     void cleanupContext() {
-        new LegacySpringAccess().destroy();
+        LegacySpringAccess.reset();
+    }
+
+    private static CountingBeanFactory createCountingBeanFactory() {
+        CountingBeanFactory counting = new CountingBeanFactory();
+        RootBeanDefinition bd = new RootBeanDefinition(TestBean.class);
+        bd.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        counting.registerBeanDefinition("testBean", bd);
+        return counting;
+    }
+
+    private static BeanFactory createBeanFactory(ClassLoader classLoader) {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().setBeanClassLoader(classLoader);
+        context.registerSingleton("testBean", TestBean.class);
+        return context.getBeanFactory();
+    }
+
+    private static TestBean getSpringBeanUsing(ClassLoader classLoader) {
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return LegacySpringAccess.getSpringBean(TestBean.class);
+        } finally {
+            thread.setContextClassLoader(original);
+        }
     }
 
     static class TestBean {
 
+        int calls;
+
+        public void doIt() {
+            ++calls;
+        }
+    }
+
+    static class CountingBeanFactory extends DefaultListableBeanFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        int lookups;
+
+        @Override
+        public String[] getBeanNamesForType(ResolvableType type) {
+            ++lookups;
+            return super.getBeanNamesForType(type);
+        }
+    }
+
+    static class ListenedBean {
+
         public void doIt() {
         }
     }
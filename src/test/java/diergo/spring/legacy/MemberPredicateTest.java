@@ -0,0 +1,136 @@
+package diergo.spring.legacy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.asm.Opcodes;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static diergo.spring.legacy.MemberPredicates.anyConstant;
+import static diergo.spring.legacy.MemberPredicates.anyGetter;
+import static diergo.spring.legacy.MemberPredicates.atClass;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static diergo.spring.legacy.MemberPredicates.returning;
+import static diergo.spring.legacy.MemberPredicates.visible;
+import static diergo.spring.legacy.MemberPredicates.withBeanType;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MemberPredicateTest {
+
+    private static final ClassFileMembers.Member STATIC_GETTER = new ClassFileMembers.Member(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "getInstance", "()Ljava/lang/Runnable;");
+    private static final ClassFileMembers.Member PRIVATE_CONSTANT = new ClassFileMembers.Member(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "INSTANCE", "Ljava/lang/Thread;");
+
+    @Test
+    public void namesAreMatched() throws NoSuchMethodException {
+        Method method = Fixture.class.getMethod("getValue");
+
+        assertThat(MemberPredicates.<Method>named("getValue").test(method), is(true));
+        assertThat(MemberPredicates.<Method>named("other", "getValue").test(method), is(true));
+        assertThat(MemberPredicates.<Method>named("other", "value").test(method), is(false));
+    }
+
+    @Test
+    public void compiledPatternsMatchLikeRegularExpressions() {
+        assertCompiledLikeRegex(MemberPredicate.GETTERS, "getA", "getAb", "get", "getab", "get1x", "gotAb");
+        assertCompiledLikeRegex(MemberPredicate.CONSTANTS, "A", "AB", "A_1", "Ab", "_A", "a");
+        assertCompiledLikeRegex("ab?c.*", "ac", "abc", "abcd", "bc", "a");
+        assertCompiledLikeRegex("get|set", "get", "set", "getX");
+        assertCompiledLikeRegex("create\\w+", "createX", "create", "make");
+    }
+
+    @Test
+    public void getterAndConstantPredicatesUseCompiledPatterns() throws NoSuchMethodException, NoSuchFieldException {
+        assertThat(anyGetter().test(Fixture.class.getMethod("getValue")), is(true));
+        assertThat(anyGetter().test(Fixture.class.getMethod("value")), is(false));
+        assertThat(anyConstant().test(Fixture.class.getField("CONSTANT")), is(true));
+        assertThat(anyConstant().test(Fixture.class.getField("field")), is(false));
+    }
+
+    @Test
+    public void combinationsAreEvaluatedOnClassFiles() {
+        MemberPredicate<Method> tested = MemberPredicate.of(MemberPredicates.<Method>visible()
+                .and(atClass())
+                .and(named("getInstance")));
+
+        assertThat(tested.mayMatch(STATIC_GETTER), is(true));
+        assertThat(tested.mustMatch(STATIC_GETTER), is(true));
+        assertThat(tested.mayMatch(PRIVATE_CONSTANT), is(false));
+    }
+
+    @Test
+    public void typesMayMatchOnClassFilesOnly() {
+        MemberPredicate<Method> tested = MemberPredicate.of(returning(Runnable.class));
+
+        assertThat(tested.mayMatch(PRIVATE_CONSTANT), is(true));
+        assertThat(tested.mustMatch(PRIVATE_CONSTANT), is(false));
+        assertThat(tested.mustMatch(STATIC_GETTER), is(true));
+    }
+
+    @Test
+    public void opaquePredicatesMayMatchOnClassFilesOnly() {
+        MemberPredicate<Method> tested = MemberPredicate.of(MemberPredicates.<Method>atClass()
+                .and(method -> false));
+
+        assertThat(tested.mayMatch(STATIC_GETTER), is(true));
+        assertThat(tested.mustMatch(STATIC_GETTER), is(false));
+        assertThat(MemberPredicate.of(tested.negate()).mayMatch(STATIC_GETTER), is(true));
+        assertThat(MemberPredicate.of(tested.negate()).mustMatch(STATIC_GETTER), is(false));
+    }
+
+    @Test
+    public void negationIsEvaluatedOnClassFiles() {
+        MemberPredicate<Method> tested = MemberPredicate.of(MemberPredicates.<Method>named("INSTANCE").negate());
+
+        assertThat(tested.mayMatch(STATIC_GETTER), is(true));
+        assertThat(tested.mustMatch(STATIC_GETTER), is(true));
+        assertThat(tested.mayMatch(PRIVATE_CONSTANT), is(false));
+    }
+
+    @Test
+    public void descriptionFollowsStructure() {
+        Predicate<Field> tested = MemberPredicates.<Field>visible()
+                .and(atClass())
+                .and(withBeanType())
+                .and(MemberPredicates.<Field>named("B", "A").or(named(Pattern.compile("X.*"))));
+
+        assertThat(MemberPredicate.of(tested).getDescription(),
+                is("!private&static&beanType&(named(A,B)|matching(/X.*/))"));
+    }
+
+    @Test
+    public void descriptionOfOpaquePredicateIsMissing() {
+        Predicate<Field> tested = MemberPredicates.<Field>visible().and(field -> true);
+
+        assertThat(MemberPredicate.of(tested).getDescription(), nullValue());
+        assertThat(MemberPredicate.of(visible()).getDescription(), is("!private"));
+    }
+
+    private static void assertCompiledLikeRegex(String regex, String... names) {
+        Pattern pattern = Pattern.compile(regex);
+        Predicate<String> tested = MemberPredicate.compile(pattern);
+        for (String name : names) {
+            assertThat(regex + " on " + name, tested.test(name), is(pattern.matcher(name).matches()));
+        }
+    }
+
+    static class Fixture {
+
+        public static final String CONSTANT = "";
+
+        public String field;
+
+        public String getValue() {
+            return field;
+        }
+
+        public String value() {
+            return field;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package diergo.spring.legacy;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Generates and compiles legacy classes to test the post processor at scale.
+ * Each kind of class is generated as often as configured: singletons by field {@code INSTANCE}, singletons by method
+ * {@code getInstance()}, prototypes by method {@code createInstance()}, noise not matching any of them and singletons
+ * by field failing in their static initializer.
+ */
+class SyntheticLegacyClasses {
+
+    private final String packageName;
+    private int singletonFields;
+    private int singletonMethods;
+    private int factories;
+    private int noise;
+    private int failingInitializers;
+
+    SyntheticLegacyClasses(String packageName) {
+        this.packageName = packageName;
+    }
+
+    SyntheticLegacyClasses singletonFields(int count) {
+        singletonFields = count;
+        return this;
+    }
+
+    SyntheticLegacyClasses singletonMethods(int count) {
+        singletonMethods = count;
+        return this;
+    }
+
+    SyntheticLegacyClasses factories(int count) {
+        factories = count;
+        return this;
+    }
+
+    SyntheticLegacyClasses noise(int count) {
+        noise = count;
+        return this;
+    }
+
+    SyntheticLegacyClasses failingInitializers(int count) {
+        failingInitializers = count;
+        return this;
+    }
+
+    /**
+     * Get the number of classes providing beans, including the ones failing on initialization.
+     */
+    int getBeans() {
+        return singletonFields + singletonMethods + factories + failingInitializers;
+    }
+
+    int getClasses() {
+        return getBeans() + noise;
+    }
+
+    String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Compile all classes into a directory.
+     *
+     * @return the class directory
+     */
+    Path compile(Path dir) throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src"));
+        Path classes = Files.createDirectories(dir.resolve("classes"));
+        List<Path> files = new ArrayList<>();
+        generate("SingletonField", singletonFields, this::singletonField, sources, files);
+        generate("SingletonMethod", singletonMethods, this::singletonMethod, sources, files);
+        generate("Factory", factories, this::factory, sources, files);
+        generate("Noise", noise, this::noise, sources, files);
+        generate("FailingInitializer", failingInitializers, this::failingInitializer, sources, files);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(
+                    files.stream().map(Path::toFile).collect(toList()));
+            boolean compiled = compiler.getTask(null, fileManager, null,
+                    compilerOptions(classes), null, units).call();
+            if (!compiled) {
+                throw new IllegalStateException("Cannot compile synthetic legacy classes in " + sources);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Target Java 8 class files, as the ASM reader of Spring 5.1 cannot read newer ones.
+     */
+    private static List<String> compilerOptions(Path classes) {
+        List<String> options = new ArrayList<>(Arrays.asList("-d", classes.toString(), "-proc:none", "-nowarn"));
+        if (System.getProperty("java.specification.version").startsWith("1.")) {
+            options.addAll(Arrays.asList("-source", "8", "-target", "8"));
+        } else {
+            options.addAll(Arrays.asList("--release", "8"));
+        }
+        return options;
+    }
+
+    /**
+     * Compile all classes and package them into a jar including directory entries, so packages can be scanned.
+     *
+     * @return the jar file
+     */
+    Path jar(Path dir) throws IOException {
+        Path classes = compile(dir);
+        Path jar = dir.resolve("synthetic-legacy.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(classes)) {
+            files.filter(file -> !file.equals(classes)).forEach(file -> {
+                String name = classes.relativize(file).toString().replace('\\', '/');
+                try {
+                    if (Files.isDirectory(file)) {
+                        out.putNextEntry(new JarEntry(name + '/'));
+                    } else {
+                        out.putNextEntry(new JarEntry(name));
+                        Files.copy(file, out);
+                    }
+                    out.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return jar;
+    }
+
+    private void generate(String prefix, int count, SourceTemplate template, Path sources, List<Path> files)
+            throws IOException {
+        Path dir = Files.createDirectories(sources.resolve(packageName.replace('.', '/')));
+        for (int i = 0; i < count; ++i) {
+            String simpleName = prefix + i;
+            Path file = dir.resolve(simpleName + ".java");
+            Files.write(file, ("package " + packageName + ";\n\n" + template.create(simpleName)).getBytes(UTF_8));
+            files.add(file);
+        }
+    }
+
+    private String singletonField(String name) {
+        return "public class " + name + " {\n"
+                + "    public static final " + name + " INSTANCE = new " + name + "();\n"
+                + "    private " + name + "() {\n    }\n"
+                + "}\n";
+    }
+
+    private String singletonMethod(String name) {
+        return "public class " + name + " {\n"
+                + "    private static final " + name + " INSTANCE = new " + name + "();\n"
+                + "    private " + name + "() {\n    }\n"
+                + "    public static " + name + " getInstance() {\n        return INSTANCE;\n    }\n"
+                + "}\n";
+    }
+
+    private String factory(String name) {
+        return "public class " + name + " {\n"
+                + "    public static " + name + " createInstance() {\n        return new " + name + "();\n    }\n"
+                + "}\n";
+    }
+
+    private String noise(String name) {
+        return "public class " + name + " {\n"
+                + "    public static final String NAME = \"" + name + "\";\n"
+                + "    private int value;\n"
+                + "    public int getValue() {\n        return value;\n    }\n"
+                + "    public static void run() {\n    }\n"
+                + "}\n";
+    }
+
+    private String failingInitializer(String name) {
+        return "public class " + name + " {\n"
+                + "    public static final " + name + " INSTANCE = create();\n"
+                + "    private " + name + "() {\n    }\n"
+                + "    private static " + name + " create() {\n"
+                + "        throw new IllegalStateException(\"" + name + "\");\n    }\n"
+                + "}\n";
+    }
+
+    private interface SourceTemplate {
+
+        String create(String simpleName);
+    }
+
+    /**
+     * A class loader for the synthetic classes remembering the classes it defined.
+     */
+    static class CountingClassLoader extends URLClassLoader {
+
+        private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+        CountingClassLoader(Path classPath) throws IOException {
+            super(new URL[] {classPath.toUri().toURL()}, CountingClassLoader.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> type = super.findClass(name);
+            loaded.add(name);
+            return type;
+        }
+
+        int getLoaded() {
+            return loaded.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package diergo.spring.legacy;
+
+import example.legacy.LegacyPrototypeByStaticMethod;
+import example.legacy.LegacySingletonByField;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.stream.Stream;
+
+import static diergo.spring.legacy.LegacyBeanRegistryPostProcessorBuilder.legacyPackages;
+import static diergo.spring.legacy.MemberPredicates.named;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_PROTOTYPE;
+
+public class TargetTypesTest {
+
+    @Test
+    public void beanDefinitionWithoutTargetTypeIsKept() {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+
+        assertThat(TargetTypes.resolve(bd), sameInstance(bd));
+    }
+
+    @Test
+    public void beanDefinitionWithTargetTypeIsCopiedToRootBeanDefinition() throws NoSuchMethodException {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+        bd.setBeanClassName(LegacyPrototypeByStaticMethod.class.getName());
+        bd.setFactoryMethodName("createInstance");
+        bd.setScope(SCOPE_PROTOTYPE);
+        bd.setResource(new ByteArrayResource(new byte[0]));
+        TargetTypes.customize(bd, LegacyPrototypeByStaticMethod.class.getMethod("createInstance"));
+
+        BeanDefinition actual = TargetTypes.resolve(bd);
+
+        assertThat(actual, instanceOf(RootBeanDefinition.class));
+        assertThat(((RootBeanDefinition) actual).getTargetType(), is(LegacyPrototypeByStaticMethod.class));
+        assertThat(actual.getFactoryMethodName(), is("createInstance"));
+        assertThat(actual.getScope(), is(SCOPE_PROTOTYPE));
+        assertThat(actual.getResourceDescription(), is(bd.getResourceDescription()));
+        assertThat(Stream.of(actual.attributeNames()).count(), is(0L));
+    }
+
+    @Test
+    public void scannedBeansAreRegisteredWithTargetType() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        LegacyBeanRegistryPostProcessor processor = (LegacyBeanRegistryPostProcessor) legacyPackages("example.legacy")
+                .singletonsFrom().fields(named("INSTANCE"))
+                .build();
+        processor.setEnvironment(new StandardEnvironment());
+
+        processor.postProcessBeanDefinitionRegistry(beanFactory);
+
+        String name = beanFactory.getBeanNamesForType(LegacySingletonByField.class)[0];
+        RootBeanDefinition actual = (RootBeanDefinition) beanFactory.getBeanDefinition(name);
+        assertThat(actual.getTargetType(), is(LegacySingletonByField.class));
+        assertThat(actual.getAttribute(TargetTypes.class.getName() + ".targetType"), nullValue());
+        assertThat(beanFactory.getBean(LegacySingletonByField.class), sameInstance(LegacySingletonByField.INSTANCE));
+    }
+}